@@ -0,0 +1,28 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks (or the ones matching first argument) with the GC profiler,
+ * so allocation rates are reported next to the timings.
+ * Results are stored in target/jmh-result.json
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "org.revenj.benchmarks.*")
+				.addProfiler(GCProfiler.class)
+				.forks(1)
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
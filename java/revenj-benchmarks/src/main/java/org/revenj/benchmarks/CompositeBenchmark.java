@@ -0,0 +1,67 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.serialization.json.DslJsonSerialization;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nested records from the benchmark owned composite model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompositeBenchmark {
+
+	@Param({"0", "10", "100"})
+	public int entities;
+
+	private CompositeModel.Composite composite;
+	private String tuple;
+	private byte[] tupleBytes;
+	private String json;
+	private PostgresReader reader;
+	private DslJsonSerialization serialization;
+
+	@Setup
+	public void setup() throws IOException {
+		composite = CompositeModel.create(new Random(42), entities);
+		tuple = CompositeModel.toTuple(composite).buildTuple(false);
+		tupleBytes = tuple.getBytes(StandardCharsets.UTF_8);
+		reader = new PostgresReader();
+		serialization = new DslJsonSerialization(null, Optional.empty());
+		json = serialization.serialize(composite);
+	}
+
+	@Benchmark
+	public String toTuple() {
+		return CompositeModel.toTuple(composite).buildTuple(false);
+	}
+
+	@Benchmark
+	public CompositeModel.Composite parseString() throws IOException {
+		reader.process(tuple);
+		return CompositeModel.parse(reader);
+	}
+
+	@Benchmark
+	public CompositeModel.Composite parseBytes() throws IOException {
+		reader.process(tupleBytes);
+		return CompositeModel.parse(reader);
+	}
+
+	@Benchmark
+	public String jsonSerialize() throws IOException {
+		return serialization.serialize(composite);
+	}
+
+	@Benchmark
+	public Object jsonDeserialize() throws IOException {
+		return serialization.deserialize(CompositeModel.Composite.class, json);
+	}
+}
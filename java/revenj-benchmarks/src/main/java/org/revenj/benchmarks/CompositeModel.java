@@ -0,0 +1,231 @@
+package org.revenj.benchmarks;
+
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.database.postgres.converters.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Benchmark owned model of nested records, arrays and enums
+ * with converters in the same shape as the ones generated by DSL Platform.
+ * It does not follow changes in the test DSL; it only needs to stay stable between benchmark runs.
+ */
+public abstract class CompositeModel {
+
+	public enum En {A, B}
+
+	public static class Simple {
+		public int number;
+		public String text;
+		public En en;
+		public En en2 = En.A;
+		public Boolean nb;
+		public Short ss;
+		public OffsetDateTime ts = OffsetDateTime.of(1, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	}
+
+	public static class Detail1 {
+		public Float f;
+		public float ff;
+	}
+
+	public static class Detail2 {
+		public String u;
+		public double[] dd = new double[0];
+	}
+
+	public static class Entity {
+		public BigDecimal money = BigDecimal.ZERO;
+		public String id = "";
+		public String compositeURI;
+		public List<Detail1> detail1 = new ArrayList<>();
+		public List<Detail2> detail2 = new ArrayList<>();
+	}
+
+	public static class Composite {
+		public UUID id = UUID.randomUUID();
+		public List<En> enn = new ArrayList<>();
+		public En en = En.A;
+		public Simple simple = new Simple();
+		public LocalDate change = LocalDate.now();
+		public List<OffsetDateTime> tsl = new ArrayList<>();
+		public List<Entity> entities = new ArrayList<>();
+		public long[] indexes;
+		public short s1;
+		public short[] s2 = new short[0];
+	}
+
+	public static Composite create(Random random, int entities) {
+		Composite composite = new Composite();
+		composite.id = new UUID(random.nextLong(), random.nextLong());
+		composite.enn = Arrays.asList(En.A, En.B, En.B);
+		composite.en = En.B;
+		composite.simple.number = random.nextInt();
+		composite.simple.text = "simple \"text\", with (escaping) \\ " + random.nextInt();
+		composite.simple.en = En.B;
+		composite.simple.nb = random.nextBoolean();
+		composite.simple.ss = (short) random.nextInt(1000);
+		composite.simple.ts = OffsetDateTime.of(2015, 3, 4, 5, 6, 7, 123456000, ZoneOffset.UTC);
+		composite.change = LocalDate.of(2015, 3, 4).plusDays(random.nextInt(1000));
+		for (int i = 0; i < 3; i++) {
+			composite.tsl.add(OffsetDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).plusSeconds(random.nextInt(100000000)));
+		}
+		for (int i = 0; i < entities; i++) {
+			Entity entity = new Entity();
+			entity.money = BigDecimal.valueOf(random.nextInt(1000000), 2);
+			entity.id = "e" + i;
+			entity.compositeURI = composite.id.toString();
+			for (int j = 0; j < 2; j++) {
+				Detail1 d1 = new Detail1();
+				d1.f = j == 0 ? null : random.nextFloat();
+				d1.ff = random.nextFloat();
+				entity.detail1.add(d1);
+				Detail2 d2 = new Detail2();
+				d2.u = "https://dsl-platform.com/" + i + "/" + j;
+				d2.dd = new double[]{random.nextDouble(), j, -1.5};
+				entity.detail2.add(d2);
+			}
+			composite.entities.add(entity);
+		}
+		composite.indexes = new long[]{1, random.nextLong(), -1};
+		composite.s1 = (short) random.nextInt(1000);
+		composite.s2 = new short[]{1, 2, 3};
+		return composite;
+	}
+
+	public static PostgresTuple toTuple(Simple value) {
+		if (value == null) return null;
+		return RecordTuple.from(new PostgresTuple[]{
+				IntConverter.toTuple(value.number),
+				StringConverter.toTuple(value.text),
+				EnumConverter.toTuple(value.en),
+				EnumConverter.toTuple(value.en2),
+				BoolConverter.toTuple(value.nb),
+				ShortConverter.toTuple(value.ss),
+				TimestampConverter.toTuple(value.ts)
+		});
+	}
+
+	public static PostgresTuple toTuple(Detail1 value) {
+		return RecordTuple.from(new PostgresTuple[]{
+				FloatConverter.toTuple(value.f),
+				FloatConverter.toTuple(value.ff)
+		});
+	}
+
+	public static PostgresTuple toTuple(Detail2 value) {
+		return RecordTuple.from(new PostgresTuple[]{
+				StringConverter.toTuple(value.u),
+				ArrayTuple.create(value.dd, DoubleConverter::toTuple)
+		});
+	}
+
+	public static PostgresTuple toTuple(Entity value) {
+		return RecordTuple.from(new PostgresTuple[]{
+				DecimalConverter.toTuple(value.money),
+				StringConverter.toTuple(value.id),
+				StringConverter.toTuple(value.compositeURI),
+				ArrayTuple.create(value.detail1, CompositeModel::toTuple),
+				ArrayTuple.create(value.detail2, CompositeModel::toTuple)
+		});
+	}
+
+	public static PostgresTuple toTuple(Composite value) {
+		return RecordTuple.from(new PostgresTuple[]{
+				UuidConverter.toTuple(value.id),
+				ArrayTuple.create(value.enn, EnumConverter::toTuple),
+				EnumConverter.toTuple(value.en),
+				toTuple(value.simple),
+				DateConverter.toTuple(value.change),
+				ArrayTuple.create(value.tsl, TimestampConverter::toTuple),
+				ArrayTuple.create(value.entities, CompositeModel::toTuple),
+				value.indexes != null ? ArrayTuple.create(value.indexes, LongConverter::toTuple) : null,
+				ShortConverter.toTuple(value.s1),
+				ArrayTuple.create(value.s2, ShortConverter::toTuple)
+		});
+	}
+
+	private static En parseEn(PostgresReader reader, int context) throws IOException {
+		String value = StringConverter.parse(reader, context, true);
+		return value == null ? null : En.valueOf(value);
+	}
+
+	private static Simple parseSimple(PostgresReader reader, int context) throws IOException {
+		int cur = reader.read();
+		if (cur == ',' || cur == ')') {
+			return null;
+		}
+		reader.read(context);
+		int inner = context << 1;
+		Simple simple = new Simple();
+		simple.number = IntConverter.parse(reader);
+		simple.text = StringConverter.parse(reader, inner, true);
+		simple.en = parseEn(reader, inner);
+		simple.en2 = parseEn(reader, inner);
+		simple.nb = BoolConverter.parseNullable(reader);
+		simple.ss = ShortConverter.parseNullable(reader);
+		simple.ts = TimestampConverter.parseOffset(reader, inner, false, true);
+		reader.read(context + 1);
+		return simple;
+	}
+
+	private static Detail1 parseDetail1(PostgresReader reader, int outerContext, int context) throws IOException {
+		Detail1 detail = new Detail1();
+		detail.f = FloatConverter.parseNullable(reader);
+		detail.ff = FloatConverter.parse(reader);
+		return detail;
+	}
+
+	private static Detail2 parseDetail2(PostgresReader reader, int outerContext, int context) throws IOException {
+		Detail2 detail = new Detail2();
+		detail.u = StringConverter.parse(reader, context, true);
+		List<Double> dd = DoubleConverter.parseCollection(reader, context, false);
+		detail.dd = new double[dd.size()];
+		for (int i = 0; i < detail.dd.length; i++) {
+			detail.dd[i] = dd.get(i);
+		}
+		return detail;
+	}
+
+	private static Entity parseEntity(PostgresReader reader, int outerContext, int context) throws IOException {
+		Entity entity = new Entity();
+		entity.money = DecimalConverter.parse(reader, false);
+		entity.id = StringConverter.parse(reader, context, false);
+		entity.compositeURI = StringConverter.parse(reader, context, true);
+		entity.detail1 = ArrayTuple.parse(reader, context, CompositeModel::parseDetail1);
+		entity.detail2 = ArrayTuple.parse(reader, context, CompositeModel::parseDetail2);
+		return entity;
+	}
+
+	public static Composite parse(PostgresReader reader) throws IOException {
+		reader.read();
+		int context = 1;
+		Composite composite = new Composite();
+		composite.id = UuidConverter.parse(reader, false);
+		composite.enn = EnumConverter.parseCollection(reader, context, En.A, r -> En.valueOf(r.bufferToString()));
+		composite.en = parseEn(reader, context);
+		composite.simple = parseSimple(reader, context);
+		composite.change = DateConverter.parse(reader, false);
+		composite.tsl = TimestampConverter.parseOffsetCollection(reader, context, false, true);
+		composite.entities = ArrayTuple.parse(reader, context, CompositeModel::parseEntity);
+		List<Long> indexes = LongConverter.parseCollection(reader, context, false);
+		if (indexes != null) {
+			composite.indexes = new long[indexes.size()];
+			for (int i = 0; i < composite.indexes.length; i++) {
+				composite.indexes[i] = indexes.get(i);
+			}
+		}
+		composite.s1 = ShortConverter.parse(reader);
+		List<Short> s2 = ShortConverter.parseCollection(reader, context, false);
+		composite.s2 = new short[s2.size()];
+		for (int i = 0; i < composite.s2.length; i++) {
+			composite.s2[i] = s2.get(i);
+		}
+		return composite;
+	}
+}
@@ -0,0 +1,87 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.revenj.Revenj;
+import org.revenj.extensibility.Container;
+import org.revenj.extensibility.InstanceScope;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContainerBenchmark {
+
+	public static class Dependency {
+	}
+
+	public static class Service {
+		public final Dependency dependency;
+
+		public Service(Dependency dependency) {
+			this.dependency = dependency;
+		}
+	}
+
+	public static class Generic<T> {
+		public final T instance;
+
+		public Generic(T instance) {
+			this.instance = instance;
+		}
+	}
+
+	public static class Composed {
+		public final Service service;
+		public final Generic<Dependency> generic;
+		public final Optional<Runnable> missing;
+
+		public Composed(Service service, Generic<Dependency> generic, Optional<Runnable> missing) {
+			this.service = service;
+			this.generic = generic;
+			this.missing = missing;
+		}
+	}
+
+	private Container container;
+	private Container context;
+
+	@Setup
+	public void setup() {
+		container = Revenj.container(false, ContainerBenchmark.class.getClassLoader());
+		container.register(Dependency.class, InstanceScope.SINGLETON);
+		container.register(Service.class, InstanceScope.TRANSIENT);
+		container.register(Generic.class, InstanceScope.TRANSIENT);
+		container.register(Composed.class, InstanceScope.CONTEXT);
+		context = container.createScope();
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		context.close();
+		container.close();
+	}
+
+	@Benchmark
+	public Object resolveSingleton() {
+		return container.resolve(Dependency.class);
+	}
+
+	@Benchmark
+	public Object resolveTransient() {
+		return container.resolve(Service.class);
+	}
+
+	@Benchmark
+	public Object resolveContext() {
+		return context.resolve(Composed.class);
+	}
+
+	@Benchmark
+	public Object resolveNewScope() throws Exception {
+		try (Container scope = container.createScope()) {
+			return scope.resolve(Composed.class);
+		}
+	}
+}
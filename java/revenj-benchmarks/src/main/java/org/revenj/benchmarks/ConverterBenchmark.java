@@ -0,0 +1,129 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.database.postgres.converters.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConverterBenchmark {
+
+	@Param({"1", "100"})
+	public int count;
+
+	private List<OffsetDateTime> timestamps;
+	private List<BigDecimal> decimals;
+	private List<UUID> uuids;
+	private List<Map<String, String>> maps;
+	private List<Integer> ints;
+	private String timestampsValue;
+	private String decimalsValue;
+	private String uuidsValue;
+	private String mapsValue;
+	private String intsValue;
+	private PostgresReader reader;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		timestamps = new ArrayList<>(count);
+		decimals = new ArrayList<>(count);
+		uuids = new ArrayList<>(count);
+		maps = new ArrayList<>(count);
+		ints = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			timestamps.add(OffsetDateTime.of(2015, 1, 1, 0, 0, 0, random.nextInt(1000000) * 1000, ZoneOffset.UTC).plusSeconds(random.nextInt()));
+			decimals.add(BigDecimal.valueOf(random.nextLong(), random.nextInt(10)));
+			uuids.add(new UUID(random.nextLong(), random.nextLong()));
+			Map<String, String> map = new HashMap<>();
+			map.put("key " + i, "value \"" + random.nextInt() + "\"");
+			map.put("second", null);
+			maps.add(map);
+			ints.add(random.nextInt());
+		}
+		timestampsValue = ArrayTuple.create(timestamps, TimestampConverter::toTuple).buildTuple(false);
+		decimalsValue = ArrayTuple.create(decimals, DecimalConverter::toTuple).buildTuple(false);
+		uuidsValue = ArrayTuple.create(uuids, UuidConverter::toTuple).buildTuple(false);
+		mapsValue = ArrayTuple.create(maps, HstoreConverter::toTuple).buildTuple(false);
+		intsValue = ArrayTuple.create(ints, IntConverter::toTuple).buildTuple(false);
+		reader = new PostgresReader();
+	}
+
+	@Benchmark
+	public String timestampToTuple() {
+		return ArrayTuple.create(timestamps, TimestampConverter::toTuple).buildTuple(false);
+	}
+
+	@Benchmark
+	public List<OffsetDateTime> timestampParse() throws IOException {
+		reader.process(timestampsValue);
+		return TimestampConverter.parseOffsetCollection(reader, 0, false, true);
+	}
+
+	@Benchmark
+	public String decimalToTuple() {
+		return ArrayTuple.create(decimals, DecimalConverter::toTuple).buildTuple(false);
+	}
+
+	@Benchmark
+	public List<BigDecimal> decimalParse() throws IOException {
+		reader.process(decimalsValue);
+		return DecimalConverter.parseCollection(reader, 0, false);
+	}
+
+	@Benchmark
+	public String uuidToTuple() {
+		return ArrayTuple.create(uuids, UuidConverter::toTuple).buildTuple(false);
+	}
+
+	@Benchmark
+	public List<UUID> uuidParse() throws IOException {
+		reader.process(uuidsValue);
+		return UuidConverter.parseCollection(reader, 0, false);
+	}
+
+	@Benchmark
+	public String hstoreToTuple() {
+		return ArrayTuple.create(maps, HstoreConverter::toTuple).buildTuple(false);
+	}
+
+	@Benchmark
+	public List<Map<String, String>> hstoreParse() throws IOException {
+		reader.process(mapsValue);
+		return HstoreConverter.parseCollection(reader, 0, false);
+	}
+
+	@Benchmark
+	public String intArrayToTuple() {
+		return ArrayTuple.create(ints, IntConverter::toTuple).buildTuple(false);
+	}
+
+	@Benchmark
+	public List<Integer> intArrayParse() throws IOException {
+		reader.process(intsValue);
+		return IntConverter.parseCollection(reader, 0, false);
+	}
+
+	@Benchmark
+	public String recordToTuple() {
+		PostgresTuple[] records = new PostgresTuple[count];
+		for (int i = 0; i < count; i++) {
+			records[i] = RecordTuple.from(new PostgresTuple[]{
+					IntConverter.toTuple(ints.get(i)),
+					UuidConverter.toTuple(uuids.get(i)),
+					DecimalConverter.toTuple(decimals.get(i)),
+					TimestampConverter.toTuple(timestamps.get(i)),
+					HstoreConverter.toTuple(maps.get(i))
+			});
+		}
+		return ArrayTuple.from(records).buildTuple(false);
+	}
+}
@@ -0,0 +1,79 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.database.postgres.PostgresWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PostgresBufferBenchmark {
+
+	@Param({"64", "4096", "262144"})
+	public int size;
+
+	private String input;
+	private byte[] bytes;
+	private PostgresReader reader;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder(size);
+		sb.append('(');
+		while (sb.length() < size - 1) {
+			sb.append(sb.length()).append(',');
+		}
+		sb.setLength(size - 1);
+		sb.append(')');
+		input = sb.toString();
+		bytes = input.getBytes(StandardCharsets.UTF_8);
+		reader = new PostgresReader();
+	}
+
+	private static int scan(PostgresReader reader) throws IOException {
+		int fields = 0;
+		reader.read();
+		while (reader.peek() != -1) {
+			reader.initBuffer();
+			reader.fillUntil(',', ')');
+			reader.read();
+			fields++;
+		}
+		return fields;
+	}
+
+	@Benchmark
+	public int readString() throws IOException {
+		reader.process(input);
+		return scan(reader);
+	}
+
+	@Benchmark
+	public int readBytes() throws IOException {
+		reader.process(bytes);
+		return scan(reader);
+	}
+
+	@Benchmark
+	public String writeAndClose() {
+		try (PostgresWriter writer = PostgresWriter.create()) {
+			for (int i = 0; i < size; i += 8) {
+				writer.write("(a,\"b\")");
+				writer.write(',');
+			}
+			return writer.toString();
+		}
+	}
+
+	@Benchmark
+	public int createReader() throws IOException {
+		try (PostgresReader reader = PostgresReader.create(null)) {
+			reader.process(input);
+			return reader.read();
+		}
+	}
+}
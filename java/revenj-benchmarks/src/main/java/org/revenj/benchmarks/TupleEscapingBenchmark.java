@@ -0,0 +1,68 @@
+package org.revenj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.revenj.database.postgres.PostgresWriter;
+import org.revenj.database.postgres.converters.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nested records with arrays, where every level adds another escape level.
+ * Strings contain quotes and slashes so escaping is exercised on every level.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TupleEscapingBenchmark {
+
+	@Param({"1", "2", "3", "4"})
+	public int levels;
+
+	private PostgresTuple tuple;
+	private PostgresWriter writer;
+
+	private static PostgresTuple level(int depth) {
+		PostgresTuple[] properties = new PostgresTuple[]{
+				StringConverter.toTuple("name \"" + depth + "\" with \\ and 'quote'"),
+				IntConverter.toTuple(depth),
+				ArrayTuple.create(Arrays.asList("a b", "c,d", "\"e\""), StringConverter::toTuple),
+				null
+		};
+		if (depth > 1) {
+			List<PostgresTuple> children = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				children.add(level(depth - 1));
+			}
+			properties[3] = ArrayTuple.create(children, t -> t);
+		}
+		return RecordTuple.from(properties);
+	}
+
+	@Setup
+	public void setup() {
+		tuple = level(levels);
+		writer = new PostgresWriter();
+	}
+
+	@TearDown
+	public void tearDown() {
+		writer.close();
+	}
+
+	@Benchmark
+	public int buildTuple() {
+		writer.reset();
+		tuple.buildTuple(writer, false);
+		return writer.length();
+	}
+
+	@Benchmark
+	public int buildQuotedTuple() {
+		writer.reset();
+		tuple.buildTuple(writer, true);
+		return writer.length();
+	}
+}
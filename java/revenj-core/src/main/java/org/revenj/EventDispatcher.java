@@ -0,0 +1,398 @@
+package org.revenj;
+
+import org.revenj.extensibility.Container;
+import org.revenj.extensibility.SystemState;
+import org.revenj.patterns.DomainEventHandler;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs domain event handlers on a worker pool instead of the submitting thread.
+ * When {@link OrderingKey} is registered, events with the same key are always processed by the same worker,
+ * so they are handled in submission order. Without it events are spread across workers without any ordering.
+ * Events raised on a connection inside a transaction are held back until that transaction is committed
+ * and discarded on rollback. Transactions which are not completed through {@link #committed(Connection)}
+ * or {@link #rolledBack(Connection)} are resolved by their Postgres status when the scope is closed.
+ * Enabled with revenj.eventDispatch=async.
+ */
+public class EventDispatcher implements Closeable {
+
+	/**
+	 * Maps an event to the key which defines processing order, eg. aggregate URI.
+	 * Events are not ordered when it's not registered in the container.
+	 */
+	@FunctionalInterface
+	public interface OrderingKey {
+		String keyOf(Object event);
+	}
+
+	public static final class HandlerStatistics {
+		private final LongAdder handled = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder retried = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void record(long nanos) {
+			handled.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		public long getHandled() {
+			return handled.sum();
+		}
+
+		public long getFailed() {
+			return failed.sum();
+		}
+
+		public long getRetried() {
+			return retried.sum();
+		}
+
+		public long getAverageMicros() {
+			long count = handled.sum();
+			return count == 0 ? 0 : totalNanos.sum() / count / 1000;
+		}
+
+		public long getMaxMicros() {
+			return maxNanos.get() / 1000;
+		}
+	}
+
+	private static final class Task {
+		final Class<?> handler;
+		final Object event;
+
+		Task(Class<?> handler, Object event) {
+			this.handler = handler;
+			this.event = event;
+		}
+	}
+
+	private final Container container;
+	private final DataSource dataSource;
+	private final SystemState systemState;
+	private volatile OrderingKey orderingKey;
+	private final long queueTimeout;
+	private final int maxAttempts;
+	private final long retryDelay;
+	private final List<BlockingQueue<Task>> lanes = new ArrayList<>();
+	private final List<Thread> workers = new ArrayList<>();
+	private final ConcurrentHashMap<Class<?>, HandlerStatistics> statistics = new ConcurrentHashMap<>();
+	private final Map<Connection, Deferred> deferred = new HashMap<>();
+	private final AtomicInteger nextLane = new AtomicInteger();
+	private final ScheduledExecutorService resolver;
+	private volatile boolean isClosed;
+
+	private final class Deferred implements AutoCloseable {
+		final Connection connection;
+		final long transactionId;
+		final List<Task> tasks = new ArrayList<>();
+
+		Deferred(Connection connection, long transactionId) {
+			this.connection = connection;
+			this.transactionId = transactionId;
+		}
+
+		@Override
+		public void close() {
+			synchronized (deferred) {
+				if (deferred.get(connection) != this) return;
+				deferred.remove(connection);
+			}
+			resolve(this);
+		}
+	}
+
+	EventDispatcher(Container container, DataSource dataSource, Properties properties, SystemState systemState) {
+		this.container = container;
+		this.dataSource = dataSource;
+		this.systemState = systemState;
+		this.queueTimeout = Utils.intSetting(properties, "revenj.eventDispatch.timeout", 30000);
+		this.maxAttempts = Math.max(1, Utils.intSetting(properties, "revenj.eventDispatch.attempts", 3));
+		this.retryDelay = Utils.intSetting(properties, "revenj.eventDispatch.retryDelay", 1000);
+		int capacity = Utils.intSetting(properties, "revenj.eventDispatch.capacity", 10000);
+		int workerCount = Utils.intSetting(properties, "revenj.eventDispatch.workers", Runtime.getRuntime().availableProcessors());
+		for (int i = 0; i < workerCount; i++) {
+			BlockingQueue<Task> lane = new ArrayBlockingQueue<>(capacity);
+			lanes.add(lane);
+			Thread worker = new Thread(new Worker(lane), "revenj-event-dispatch-" + (i + 1));
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+		resolver = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "revenj-event-resolver");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static final OrderingKey NO_ORDERING = event -> null;
+
+	//ordering key is resolved on first use since it's registered by aspects after the dispatcher is created
+	private OrderingKey orderingKey() {
+		OrderingKey key = orderingKey;
+		if (key == null) {
+			key = container.tryResolve(OrderingKey.class).orElse(NO_ORDERING);
+			orderingKey = key;
+		}
+		return key;
+	}
+
+	<T> DomainEventHandler<T> handler(Class<?> manifest, Container scope) {
+		return event -> {
+			Connection connection = scope.tryResolve(Connection.class).orElse(null);
+			if (isInTransaction(connection)) {
+				defer(connection, scope, new Task(manifest, event));
+			} else {
+				dispatch(new Task(manifest, event));
+			}
+		};
+	}
+
+	private void defer(Connection connection, Container scope, Task task) {
+		long transactionId = transactionId(connection);
+		Deferred previous = null;
+		synchronized (deferred) {
+			Deferred pending = deferred.get(connection);
+			if (pending != null && pending.transactionId != transactionId) {
+				// connection was committed or rolled back directly, so previous transaction must be resolved on its own
+				previous = pending;
+				pending = null;
+			}
+			if (pending == null) {
+				pending = new Deferred(connection, transactionId);
+				deferred.put(connection, pending);
+				// closing the scope is the only step shared by all transaction paths
+				scope.registerInstance(Deferred.class, pending, true);
+			}
+			pending.tasks.add(task);
+		}
+		if (previous != null) {
+			resolve(previous);
+		}
+	}
+
+	private static long transactionId(Connection connection) {
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery("SELECT txid_current()")) {
+			return rs.next() ? rs.getLong(1) : -1;
+		} catch (Exception ignore) {
+			return -1;
+		}
+	}
+
+	private String transactionStatus(long transactionId) {
+		if (transactionId == -1 || dataSource == null) return null;
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement ps = connection.prepareStatement("SELECT txid_status(?)")) {
+			ps.setLong(1, transactionId);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getString(1) : null;
+			}
+		} catch (Exception ignore) {
+			return null;
+		}
+	}
+
+	private void resolve(Deferred pending) {
+		String status = transactionStatus(pending.transactionId);
+		if ("committed".equals(status)) {
+			for (Task task : pending.tasks) {
+				dispatch(task);
+			}
+		} else if ("in progress".equals(status) && !isClosed) {
+			resolver.schedule(() -> resolve(pending), 1, TimeUnit.SECONDS);
+		} else if (!"aborted".equals(status)) {
+			systemState.notify(new SystemState.SystemEvent(
+					"events",
+					"Discarded " + pending.tasks.size() + " events since transaction outcome is unknown"));
+		}
+	}
+
+	private static boolean isInTransaction(Connection connection) {
+		try {
+			return connection != null && !connection.isClosed() && !connection.getAutoCommit();
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	boolean hasDeferred(Connection connection) {
+		synchronized (deferred) {
+			return deferred.containsKey(connection);
+		}
+	}
+
+	/**
+	 * Dispatch events raised inside the transaction. Should be called after the connection was committed.
+	 *
+	 * @param connection committed connection
+	 */
+	public void committed(Connection connection) {
+		Deferred pending;
+		synchronized (deferred) {
+			pending = deferred.remove(connection);
+		}
+		if (pending == null) return;
+		for (Task task : pending.tasks) {
+			dispatch(task);
+		}
+	}
+
+	/**
+	 * Discard events raised inside the transaction. Should be called after the connection was rolled back.
+	 *
+	 * @param connection rolled back connection
+	 */
+	public void rolledBack(Connection connection) {
+		synchronized (deferred) {
+			deferred.remove(connection);
+		}
+	}
+
+	private void dispatch(Task task) {
+		if (isClosed) {
+			throw new RuntimeException("Event dispatcher is closed. Unable to dispatch to " + task.handler.getName());
+		}
+		String key = orderingKey().keyOf(task.event);
+		int index = Math.floorMod(key == null ? nextLane.getAndIncrement() : key.hashCode(), lanes.size());
+		try {
+			if (!lanes.get(index).offer(task, queueTimeout, TimeUnit.MILLISECONDS)) {
+				throw new RuntimeException("Event dispatch queue is full. Unable to dispatch to " + task.handler.getName());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while dispatching to " + task.handler.getName());
+		}
+	}
+
+	public Map<Class<?>, HandlerStatistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	public int getPending() {
+		int total = 0;
+		for (BlockingQueue<Task> lane : lanes) {
+			total += lane.size();
+		}
+		return total;
+	}
+
+	private class Worker implements Runnable {
+		private final BlockingQueue<Task> lane;
+		private Container scope;
+		private Connection connection;
+
+		Worker(BlockingQueue<Task> lane) {
+			this.lane = lane;
+		}
+
+		@Override
+		public void run() {
+			setupScope();
+			while (!isClosed || !lane.isEmpty()) {
+				try {
+					Task task = lane.poll(100, TimeUnit.MILLISECONDS);
+					if (task != null) {
+						process(task);
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			closeScope();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void process(Task task) throws InterruptedException {
+			HandlerStatistics stats = statistics.computeIfAbsent(task.handler, k -> new HandlerStatistics());
+			for (int attempt = 1; ; attempt++) {
+				long start = System.nanoTime();
+				try {
+					DomainEventHandler<Object> handler = (DomainEventHandler<Object>) scope.resolve(task.handler);
+					handler.handle(task.event);
+					if (connection != null) {
+						connection.commit();
+						committed(connection);
+					}
+					stats.record(System.nanoTime() - start);
+					return;
+				} catch (Exception e) {
+					closeScope();
+					setupScope();
+					if (attempt >= maxAttempts) {
+						stats.failed.increment();
+						systemState.notify(new SystemState.SystemEvent(
+								"events",
+								"Unable to handle " + task.event.getClass().getName() + " in " + task.handler.getName() + ": " + e.getMessage()));
+						return;
+					}
+					stats.retried.increment();
+					Thread.sleep(retryDelay * attempt);
+				}
+			}
+		}
+
+		private void setupScope() {
+			scope = container.createScope();
+			if (dataSource == null) return;
+			try {
+				connection = dataSource.getConnection();
+				connection.setAutoCommit(false);
+				scope.registerInstance(Connection.class, connection, false);
+			} catch (Exception ignore) {
+			}
+		}
+
+		private void closeScope() {
+			try {
+				if (connection != null) {
+					connection.rollback();
+					rolledBack(connection);
+					connection.close();
+				}
+			} catch (Exception ignore) {
+			}
+			connection = null;
+			try {
+				scope.close();
+			} catch (Exception ignore) {
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		isClosed = true;
+		resolver.shutdown();
+		for (Thread worker : workers) {
+			try {
+				worker.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+}
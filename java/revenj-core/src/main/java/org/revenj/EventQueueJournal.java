@@ -0,0 +1,211 @@
+package org.revenj;
+
+import org.revenj.patterns.DomainEvent;
+import org.revenj.serialization.Serialization;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Local append only file with queued events which are not yet stored in the database.
+ * Each queued event is written as E line and each stored event as A line.
+ * On startup events without acknowledgment are recovered and the file is rewritten.
+ * File is compacted when all written events are acknowledged and it grew above the limit.
+ * Events which could not be stored or recovered are kept in the journal for the next startup.
+ * Entries are flushed to the operating system, so they survive a process crash.
+ * They survive a power loss or OS crash only when sync is enabled (revenj.eventQueue.journalSync=true),
+ * in which case each appended event is forced to disk before it's queued.
+ * Acknowledgments are never forced, so a lost acknowledgment can only store the event again.
+ */
+final class EventQueueJournal implements Closeable {
+
+	private static final long COMPACT_SIZE = 16 * 1024 * 1024;
+
+	static final class Entry {
+		final long id;
+		final DomainEvent event;
+
+		Entry(long id, DomainEvent event) {
+			this.id = id;
+			this.event = event;
+		}
+	}
+
+	private final File file;
+	private final Serialization<String> serialization;
+	private final ClassLoader loader;
+	private final boolean sync;
+	private FileOutputStream stream;
+	private Writer writer;
+	private long nextId;
+	private long outstanding;
+	private final Set<Long> retained = new HashSet<>();
+
+	EventQueueJournal(File file, Serialization<String> serialization, ClassLoader loader, boolean sync) {
+		this.file = file;
+		this.serialization = serialization;
+		this.loader = loader;
+		this.sync = sync;
+	}
+
+	private void open() throws IOException {
+		stream = new FileOutputStream(file, true);
+		writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+	}
+
+	synchronized List<Entry> recover(List<String> errors) throws IOException {
+		LinkedHashMap<Long, String[]> pending = new LinkedHashMap<>();
+		if (file.exists()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] parts = line.split("\t", 4);
+					try {
+						if (parts.length == 4 && "E".equals(parts[0])) {
+							pending.put(Long.parseLong(parts[1]), parts);
+						} else if (parts.length == 2 && "A".equals(parts[0])) {
+							pending.remove(Long.parseLong(parts[1]));
+						}
+					} catch (NumberFormatException ignore) {
+						// partially written line from a crash
+					}
+				}
+			}
+		}
+		List<Entry> result = new ArrayList<>(pending.size());
+		List<String> lines = new ArrayList<>(pending.size());
+		for (String[] parts : pending.values()) {
+			long id = nextId++;
+			lines.add(line(id, parts[2], parts[3]));
+			try {
+				Class<?> manifest = Class.forName(parts[2], true, loader);
+				DomainEvent event = (DomainEvent) serialization.deserialize(manifest, parts[3]);
+				result.add(new Entry(id, event));
+			} catch (ClassNotFoundException | IOException | ClassCastException e) {
+				// unreadable events are kept in the journal so they can be recovered after the problem is fixed
+				retained.add(id);
+				errors.add("Unable to recover event " + parts[2] + ": " + e.getMessage() + ". Event is kept in the journal");
+			}
+		}
+		rewrite(lines);
+		open();
+		outstanding = result.size();
+		return result;
+	}
+
+	private static String line(long id, String type, String json) {
+		return "E\t" + id + '\t' + type + '\t' + json;
+	}
+
+	// new content is written and forced to a temporary file which is then moved over the journal.
+	// if the move is lost the previous journal is still complete
+	private void rewrite(List<String> lines) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (FileOutputStream fos = new FileOutputStream(tmp, false);
+			 Writer out = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+			for (String line : lines) {
+				out.write(line);
+				out.write('\n');
+			}
+			out.flush();
+			fos.getFD().sync();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (sync) {
+			syncDirectory();
+		}
+	}
+
+	// appends after the move must not end up in a file whose directory entry was lost
+	private void syncDirectory() {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory == null) return;
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ignore) {
+			// not supported on some platforms
+		}
+	}
+
+	private void write(long id, String type, String json) throws IOException {
+		writer.write("E\t");
+		writer.write(Long.toString(id));
+		writer.write('\t');
+		writer.write(type);
+		writer.write('\t');
+		writer.write(json);
+		writer.write('\n');
+	}
+
+	synchronized long append(DomainEvent event) throws IOException {
+		String json = serialization.serialize(event);
+		long id = nextId++;
+		write(id, event.getClass().getName(), json);
+		writer.flush();
+		if (sync) {
+			stream.getFD().sync();
+		}
+		outstanding++;
+		return id;
+	}
+
+	synchronized void acknowledge(long[] ids) throws IOException {
+		for (long id : ids) {
+			writer.write("A\t");
+			writer.write(Long.toString(id));
+			writer.write('\n');
+		}
+		writer.flush();
+		outstanding -= ids.length;
+		if (outstanding == 0 && file.length() > COMPACT_SIZE) {
+			compact();
+		}
+	}
+
+	/**
+	 * Stop tracking events which could not be stored.
+	 * They are kept in the journal and recovered on restart.
+	 */
+	synchronized void abandon(long[] ids) throws IOException {
+		for (long id : ids) {
+			retained.add(id);
+		}
+		outstanding -= ids.length;
+		if (outstanding == 0 && file.length() > COMPACT_SIZE) {
+			compact();
+		}
+	}
+
+	private void compact() throws IOException {
+		writer.close();
+		List<String> lines = new ArrayList<>(retained.size());
+		if (!retained.isEmpty()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] parts = line.split("\t", 3);
+					try {
+						if (parts.length == 3 && "E".equals(parts[0]) && retained.contains(Long.parseLong(parts[1]))) {
+							lines.add(line);
+						}
+					} catch (NumberFormatException ignore) {
+					}
+				}
+			}
+		}
+		rewrite(lines);
+		open();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+}
@@ -1,103 +1,252 @@
 package org.revenj;
 
 import org.revenj.extensibility.Container;
+import org.revenj.extensibility.SystemState;
 import org.revenj.patterns.DomainEvent;
 import org.revenj.patterns.DomainEventStore;
+import org.revenj.serialization.Serialization;
 
 import javax.sql.DataSource;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 class GlobalEventStore implements Closeable {
 
+	private static final int MAX_ATTEMPTS = 3;
+
+	private static final class Queued {
+		final long id;
+		final DomainEvent event;
+
+		Queued(long id, DomainEvent event) {
+			this.id = id;
+			this.event = event;
+		}
+	}
+
 	private final Container container;
 	private final DataSource dataSource;
-	private Connection connection;
-	private final ConcurrentMap<Class<?>, DomainEventStore> eventStores = new ConcurrentHashMap<>();
-	private final BlockingQueue<DomainEvent> eventQueue = new LinkedBlockingDeque<>();
-	private final Thread loop;
-	private boolean isClosed;
+	private final SystemState systemState;
+	private final BlockingQueue<Queued> eventQueue;
+	private final int batchSize;
+	private final long queueTimeout;
+	private final long retryDelay;
+	private final EventQueueJournal journal;
+	private final List<Thread> writers = new ArrayList<>();
+	private volatile boolean isClosed;
 
-	public GlobalEventStore(Container container, DataSource dataSource) {
+	public GlobalEventStore(Container container, DataSource dataSource, Properties properties, SystemState systemState) {
 		this.container = container;
 		this.dataSource = dataSource;
-		setupConnection();
-		loop = new Thread(new WaitForEvents());
-		loop.setDaemon(true);
-		loop.start();
+		this.systemState = systemState;
+		this.eventQueue = new LinkedBlockingDeque<>(Utils.intSetting(properties, "revenj.eventQueue.capacity", 100000));
+		this.batchSize = Utils.intSetting(properties, "revenj.eventQueue.batchSize", 1000);
+		this.queueTimeout = Utils.intSetting(properties, "revenj.eventQueue.timeout", 30000);
+		this.retryDelay = Utils.intSetting(properties, "revenj.eventQueue.retryDelay", 1000);
+		String journalPath = properties.getProperty("revenj.eventQueue.journal");
+		List<EventQueueJournal.Entry> recovered = Collections.emptyList();
+		if (journalPath != null && journalPath.length() > 0) {
+			try {
+				@SuppressWarnings("unchecked")
+				Serialization<String> serialization = container.resolve(Serialization.class, String.class);
+				journal = new EventQueueJournal(
+						new File(journalPath),
+						serialization,
+						container.resolve(ClassLoader.class),
+						"true".equals(properties.getProperty("revenj.eventQueue.journalSync")));
+				List<String> errors = new ArrayList<>();
+				recovered = journal.recover(errors);
+				for (String error : errors) {
+					systemState.notify(new SystemState.SystemEvent("events", error));
+				}
+			} catch (ReflectiveOperationException | IOException e) {
+				throw new RuntimeException("Unable to open event queue journal: " + journalPath, e);
+			}
+		} else {
+			journal = null;
+		}
+		int writerCount = Utils.intSetting(properties, "revenj.eventQueue.writers", 1);
+		for (int i = 0; i < writerCount; i++) {
+			Thread loop = new Thread(new WaitForEvents(), "revenj-event-queue-" + (i + 1));
+			loop.setDaemon(true);
+			loop.start();
+			writers.add(loop);
+		}
+		List<Queued> rejected = new ArrayList<>();
+		for (EventQueueJournal.Entry entry : recovered) {
+			Queued queued = new Queued(entry.id, entry.event);
+			if (!enqueue(queued)) {
+				rejected.add(queued);
+			}
+		}
+		if (!rejected.isEmpty()) {
+			abandon(rejected);
+			systemState.notify(new SystemState.SystemEvent(
+					"events",
+					"Event queue is full. " + rejected.size() + " recovered events will be retried on restart"));
+		}
 	}
 
 	<TEvent extends DomainEvent> void queue(TEvent domainEvent) {
-		eventQueue.add(domainEvent);
+		long id = -1;
+		if (journal != null) {
+			try {
+				id = journal.append(domainEvent);
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to write event to queue journal", e);
+			}
+		}
+		Queued queued = new Queued(id, domainEvent);
+		if (!enqueue(queued)) {
+			acknowledge(Collections.singletonList(queued));
+			throw new RuntimeException("Event queue is full. Unable to queue " + domainEvent.getClass().getName());
+		}
+	}
+
+	private boolean enqueue(Queued queued) {
+		try {
+			return eventQueue.offer(queued, queueTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static long[] ids(List<Queued> events) {
+		long[] ids = new long[events.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = events.get(i).id;
+		}
+		return ids;
+	}
+
+	private void acknowledge(List<Queued> stored) {
+		if (journal == null) return;
+		try {
+			journal.acknowledge(ids(stored));
+		} catch (IOException e) {
+			systemState.notify(new SystemState.SystemEvent("events", "Unable to write to queue journal: " + e.getMessage()));
+		}
+	}
+
+	private void abandon(List<Queued> failed) {
+		if (journal == null) return;
+		try {
+			journal.abandon(ids(failed));
+		} catch (IOException e) {
+			systemState.notify(new SystemState.SystemEvent("events", "Unable to write to queue journal: " + e.getMessage()));
+		}
 	}
 
 	@SuppressWarnings("unchecked")
 	private class WaitForEvents implements Runnable {
+		private final Map<Class<?>, DomainEventStore<DomainEvent>> eventStores = new HashMap<>();
+		private Container scope;
+		private Connection connection;
+
 		@Override
 		public void run() {
-			List<DomainEvent> bulk = new ArrayList<>(1000);
-			Class<?> lastType;
-			DomainEvent info = null;
+			setupConnection();
+			List<Queued> batch = new ArrayList<>(batchSize);
+			LinkedHashMap<Class<?>, List<Queued>> groups = new LinkedHashMap<>();
 			while (!isClosed) {
 				try {
-					if (bulk.size() == 0) {
-						info = eventQueue.take();
-						bulk.add(info);
+					Queued first = eventQueue.poll(100, TimeUnit.MILLISECONDS);
+					if (first == null) continue;
+					batch.add(first);
+					eventQueue.drainTo(batch, batchSize - 1);
+					// group by type to keep batches when different events are interleaved
+					for (Queued q : batch) {
+						groups.computeIfAbsent(q.event.getClass(), k -> new ArrayList<>()).add(q);
 					}
-					if (info == null) break;
-					lastType = info.getClass();
-					int i = 0;
-					while (i++ < 1000 && !eventQueue.isEmpty()) {
-						info = eventQueue.take();
-						if (info.getClass() != lastType) break;
-						bulk.add(info);
+					for (Map.Entry<Class<?>, List<Queued>> kv : groups.entrySet()) {
+						submit(kv.getKey(), kv.getValue());
 					}
-					final Class<?> currentType = lastType;
-					DomainEventStore store = eventStores.computeIfAbsent(lastType, t -> {
+				} catch (InterruptedException e) {
+					break;
+				} finally {
+					batch.clear();
+					groups.clear();
+				}
+			}
+			closeConnection();
+		}
+
+		private void submit(Class<?> type, List<Queued> group) throws InterruptedException {
+			List<DomainEvent> events = new ArrayList<>(group.size());
+			for (Queued q : group) {
+				events.add(q.event);
+			}
+			for (int attempt = 1; ; attempt++) {
+				try {
+					DomainEventStore<DomainEvent> store = eventStores.computeIfAbsent(type, t -> {
 						try {
-							return container.resolve(DomainEventStore.class, currentType);
+							return scope.resolve(DomainEventStore.class, type);
 						} catch (ReflectiveOperationException e) {
 							throw new RuntimeException(e);
 						}
 					});
-					try {
-						store.submit(bulk);
-					} finally {
-						bulk.clear();
-					}
-					if (info.getClass() != currentType) {
-						bulk.add(info);
-					}
+					store.submit(events);
+					acknowledge(group);
+					return;
 				} catch (Exception e) {
-					try {
-						connection.close();
-					} catch (Exception ignore) {
-					}
+					closeConnection();
 					setupConnection();
+					if (attempt >= MAX_ATTEMPTS || isClosed) {
+						systemState.notify(new SystemState.SystemEvent(
+								"events",
+								"Unable to store " + events.size() + " events of " + type.getName() + ": " + e.getMessage()
+										+ (journal != null ? ". Events will be retried on restart" : ". Events are dropped")));
+						abandon(group);
+						return;
+					}
+					Thread.sleep(retryDelay * attempt);
 				}
 			}
 		}
-	}
 
-	private void setupConnection() {
-		try {
+		private void setupConnection() {
 			eventStores.clear();
-			connection = dataSource.getConnection();
-			connection.setAutoCommit(true);
-			container.registerInstance(connection);
-		} catch (Exception ignore) {
+			scope = container.createScope();
+			try {
+				connection = dataSource.getConnection();
+				connection.setAutoCommit(true);
+				scope.registerInstance(connection);
+			} catch (Exception ignore) {
+			}
+		}
+
+		private void closeConnection() {
+			try {
+				if (connection != null) {
+					connection.close();
+				}
+				scope.close();
+			} catch (Exception ignore) {
+			}
+			connection = null;
 		}
 	}
 
 	@Override
 	public void close() throws IOException {
 		isClosed = true;
+		for (Thread writer : writers) {
+			try {
+				writer.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (journal != null) {
+			journal.close();
+		}
 	}
 }
@@ -238,12 +238,14 @@ final class LocatorDataContext implements UnitOfWork {
 
 	@Override
 	public void commit() {
-		if (hasChanges) {
+		Optional<EventDispatcher> dispatcher = scope.tryResolve(EventDispatcher.class);
+		if (hasChanges || dispatcher.isPresent() && dispatcher.get().hasDeferred(connection)) {
 			try {
 				connection.commit();
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
+			dispatcher.ifPresent(d -> d.committed(connection));
 		}
 		hasChanges = false;
 	}
@@ -254,6 +256,8 @@ final class LocatorDataContext implements UnitOfWork {
 			connection.rollback();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
+		} finally {
+			scope.tryResolve(EventDispatcher.class).ifPresent(d -> d.rolledBack(connection));
 		}
 		hasChanges = false;
 	}
@@ -266,6 +270,8 @@ final class LocatorDataContext implements UnitOfWork {
 		if (connection != null && manageConnection) {
 			if (hasChanges) {
 				rollback();
+			} else {
+				scope.tryResolve(EventDispatcher.class).ifPresent(d -> d.rolledBack(connection));
 			}
 			try {
 				connection.setAutoCommit(true);
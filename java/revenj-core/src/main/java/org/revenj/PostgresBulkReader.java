@@ -3,6 +3,7 @@ package org.revenj;
 import org.revenj.patterns.*;
 import org.revenj.database.postgres.*;
 import org.revenj.database.postgres.converters.ArrayTuple;
+import org.revenj.database.postgres.jinq.AsyncQueryExecutor;
 import org.revenj.database.postgres.jinq.RevenjQueryComposer;
 import org.revenj.database.postgres.jinq.jpqlquery.GeneratedQueryParameter;
 import org.revenj.database.postgres.jinq.transform.LambdaInfo;
@@ -10,29 +11,61 @@ import org.revenj.database.postgres.jinq.transform.LambdaInfo;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoCloseable {
 
+	enum Mode {
+		SINGLE,
+		PIPELINED,
+		PARALLEL,
+		AUTO
+	}
+
+	private static final int SELECT_START = "SELECT (".length();
+	private static final int DEFAULT_PARALLELISM = 4;
+
 	private final ServiceLocator locator;
 	private final Connection connection;
 	private final PostgresReader reader;
 	private final PostgresWriter writer;
 	private final StringBuilder builder;
-	private final List<Consumer<PreparedStatement>> writeArguments = new ArrayList<>();
+	private final List<ObjIntConsumer<PreparedStatement>> writeArguments = new ArrayList<>();
+	private final BitSet fixedArguments = new BitSet();
 	private int totalArguments;
 	private final List<BiFunction<ResultSet, Integer, Object>> resultActions = new ArrayList<>();
 	private Object[] results;
 	private final Map<Class<?>, BulkRepository> repositories = new HashMap<>();
 	private final Map<Class<?>, PostgresOlapCubeQuery> cubes = new HashMap<>();
 	private final boolean closeConnection;
+	private final boolean sharedConnection;
+	private final Mode mode;
+	private final int parallelism;
+	private final List<Integer> fragmentEnds = new ArrayList<>();
+	private final List<Integer> argumentEnds = new ArrayList<>();
+	private final List<Integer> parameterEnds = new ArrayList<>();
+	private final BitSet cubeActions = new BitSet();
 
 	public PostgresBulkReader(ServiceLocator locator, Connection connection, boolean closeConnection) {
+		this(locator, connection, closeConnection, !closeConnection, Mode.SINGLE, DEFAULT_PARALLELISM);
+	}
+
+	PostgresBulkReader(
+			ServiceLocator locator,
+			Connection connection,
+			boolean closeConnection,
+			boolean sharedConnection,
+			Mode mode,
+			int parallelism) {
 		this.locator = locator;
 		this.connection = connection;
 		this.closeConnection = closeConnection;
+		this.sharedConnection = sharedConnection;
+		this.mode = mode;
+		this.parallelism = parallelism;
 		this.reader = PostgresReader.create(locator);
 		this.writer = PostgresWriter.create();
 		this.builder = new StringBuilder("SELECT (");
@@ -40,9 +73,9 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 
 	public static PostgresBulkReader create(ServiceLocator locator) {
 		Optional<Connection> tryConnection = locator.tryResolve(Connection.class);
-		boolean closeConnection = tryConnection.isPresent();
+		boolean sharedConnection = tryConnection.isPresent();
 		Connection connection;
-		if (!closeConnection) {
+		if (!sharedConnection) {
 			javax.sql.DataSource ds = locator.resolve(javax.sql.DataSource.class);
 			try {
 				connection = ds.getConnection();
@@ -52,7 +85,21 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		} else {
 			connection = tryConnection.get();
 		}
-		return new PostgresBulkReader(locator, connection, closeConnection);
+		Optional<Properties> properties = locator.tryResolve(Properties.class);
+		Mode mode = Mode.SINGLE;
+		int parallelism = DEFAULT_PARALLELISM;
+		if (properties.isPresent()) {
+			String modeValue = properties.get().getProperty("revenj.bulkReaderMode");
+			if (modeValue != null) {
+				try {
+					mode = Mode.valueOf(modeValue.toUpperCase(Locale.ENGLISH));
+				} catch (IllegalArgumentException e) {
+					throw new RuntimeException("Unknown revenj.bulkReaderMode: " + modeValue + ". Supported values: single, pipelined, parallel, auto");
+				}
+			}
+			parallelism = Utils.intSetting(properties.get(), "revenj.bulkReaderParallelism", DEFAULT_PARALLELISM);
+		}
+		return new PostgresBulkReader(locator, connection, !sharedConnection, sharedConnection, mode, parallelism);
 	}
 
 	@Override
@@ -81,20 +128,33 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		builder.setLength(0);
 		resultActions.clear();
 		writeArguments.clear();
+		fixedArguments.clear();
 		totalArguments = 0;
 		results = null;
+		fragmentEnds.clear();
+		argumentEnds.clear();
+		parameterEnds.clear();
+		cubeActions.clear();
 		builder.append("SELECT (");
 	}
 
 	@Override
 	public void addArgument(Consumer<PreparedStatement> statement) {
+		//argument index is fixed, so this action can't be moved to another statement
+		fixedArguments.set(writeArguments.size());
+		writeArguments.add((ps, offset) -> statement.accept(ps));
+		totalArguments++;
+	}
+
+	@Override
+	public void addArgument(ObjIntConsumer<PreparedStatement> statement) {
 		writeArguments.add(statement);
 		totalArguments++;
 	}
 
 	@SuppressWarnings("unchecked")
 	private <T> Callable<T> add(BiFunction<ResultSet, Integer, T> reader) {
-		builder.append("),(");
+		endAction(false);
 		int i = resultActions.size();
 		resultActions.add(reader::apply);
 		return () -> {
@@ -105,6 +165,16 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		};
 	}
 
+	private void endAction(boolean isCube) {
+		if (isCube) {
+			cubeActions.set(resultActions.size());
+		}
+		fragmentEnds.add(builder.length());
+		argumentEnds.add(writeArguments.size());
+		parameterEnds.add(totalArguments);
+		builder.append("),(");
+	}
+
 	@SuppressWarnings("unchecked")
 	private BulkRepository getRepository(Class<?> manifest) {
 		BulkRepository repository = repositories.get(manifest);
@@ -184,17 +254,16 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		for (int x = 0; x < facts.size(); x++) {
 			columnNames[dimensions.size() + x] = facts.get(x);
 		}
-		builder.append(") _x),(");
-		int i = resultActions.size();
+		builder.append(") _x");
 		List<Map<String, Object>> result = new ArrayList<>();
 		int args = getArgumentIndex();
-		writeArguments.add(ps -> {
+		writeArguments.add((ps, shift) -> {
 			try {
 				RevenjQueryComposer.fillQueryParameters(
 						connection,
 						locator,
 						ps,
-						args,
+						args - shift,
 						parameters,
 						lambdas);
 			} catch (SQLException e) {
@@ -202,9 +271,10 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 			}
 		});
 		totalArguments += parameters != null ? parameters.size() : 0;
+		endAction(true);
 		resultActions.add((rs, ind) -> {
 			try {
-				reader.process(rs.getString(ind));
+				reader.process(rs.getBytes(ind));
 				ArrayTuple.parse(reader, 0, (rdr, outCtx, ctx) -> {
 					Map<String, Object> map = new LinkedHashMap<>();
 					rdr.read(3);
@@ -228,26 +298,273 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		};
 	}
 
+	Mode chooseMode() {
+		int actions = resultActions.size();
+		Mode selected = mode;
+		if (selected == Mode.AUTO) {
+			if (actions < 2 || cubeActions.isEmpty()) {
+				selected = Mode.SINGLE;
+			} else {
+				selected = sharedConnection ? Mode.PIPELINED : Mode.PARALLEL;
+			}
+		}
+		//parallel connections can't see changes from the current transaction
+		if (selected == Mode.PARALLEL && (sharedConnection || parallelism < 2)) {
+			selected = Mode.PIPELINED;
+		}
+		if (actions < 2) {
+			selected = Mode.SINGLE;
+		}
+		return selected;
+	}
+
 	@Override
 	public void execute() throws IOException {
 		results = new Object[resultActions.size()];
 		try {
-			try (PreparedStatement ps = connection.prepareStatement(builder.substring(0, builder.length() - 2))) {
-				for (Consumer<PreparedStatement> writeArgument : writeArguments) {
-					writeArgument.accept(ps);
-				}
-				ps.setEscapeProcessing(false);
-				ResultSet rs = ps.executeQuery();
-				rs.next();
-				for (int i = 0; i < resultActions.size(); i++) {
-					results[i] = resultActions.get(i).apply(rs, i + 1);
-				}
+			switch (chooseMode()) {
+				case PIPELINED:
+					executePipelined();
+					break;
+				case PARALLEL:
+					List<List<Integer>> groups = parallelGroups();
+					if (canSplit(groups)) {
+						executeParallel(groups);
+					} else {
+						executePipelined();
+					}
+					break;
+				default:
+					executeSingle();
+					break;
 			}
 		} catch (SQLException e) {
 			throw new IOException(e);
 		}
 	}
 
+	private void executeSingle() throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(builder.substring(0, builder.length() - 2))) {
+			for (ObjIntConsumer<PreparedStatement> writeArgument : writeArguments) {
+				writeArgument.accept(ps, 0);
+			}
+			ps.setEscapeProcessing(false);
+			ResultSet rs = ps.executeQuery();
+			rs.next();
+			for (int i = 0; i < resultActions.size(); i++) {
+				results[i] = resultActions.get(i).apply(rs, i + 1);
+			}
+		}
+	}
+
+	private void executePipelined() throws SQLException {
+		StringBuilder sql = new StringBuilder();
+		for (int i = 0; i < resultActions.size(); i++) {
+			if (i > 0) {
+				sql.append(";\n");
+			}
+			sql.append("SELECT (").append(builder, fragmentStart(i), fragmentEnds.get(i)).append(')');
+		}
+		try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+			for (ObjIntConsumer<PreparedStatement> writeArgument : writeArguments) {
+				writeArgument.accept(ps, 0);
+			}
+			ps.setEscapeProcessing(false);
+			ps.execute();
+			for (int i = 0; i < resultActions.size(); i++) {
+				ResultSet rs = ps.getResultSet();
+				rs.next();
+				results[i] = resultActions.get(i).apply(rs, 1);
+				ps.getMoreResults();
+			}
+		}
+	}
+
+	private int fragmentStart(int action) {
+		return action == 0 ? SELECT_START : fragmentEnds.get(action - 1) + 3;
+	}
+
+	private List<List<Integer>> parallelGroups() {
+		List<List<Integer>> groups = new ArrayList<>();
+		List<Integer> lookups = new ArrayList<>();
+		for (int i = 0; i < resultActions.size(); i++) {
+			if (cubeActions.get(i)) {
+				groups.add(new ArrayList<>(Collections.singletonList(i)));
+			} else {
+				lookups.add(i);
+			}
+		}
+		if (!lookups.isEmpty()) {
+			groups.add(0, lookups);
+		}
+		while (groups.size() > parallelism) {
+			List<Integer> last = groups.remove(groups.size() - 1);
+			groups.get(groups.size() - 1).addAll(last);
+		}
+		return groups;
+	}
+
+	private static final class GroupResult {
+		final Connection connection;
+		final PreparedStatement statement;
+		final ResultSet resultSet;
+
+		GroupResult(Connection connection, PreparedStatement statement, ResultSet resultSet) {
+			this.connection = connection;
+			this.statement = statement;
+			this.resultSet = resultSet;
+		}
+	}
+
+	private int parameterStart(int action) {
+		return action == 0 ? 0 : parameterEnds.get(action - 1);
+	}
+
+	private int argumentStart(int action) {
+		return action == 0 ? 0 : argumentEnds.get(action - 1);
+	}
+
+	//actions with arguments which can't be shifted must keep their position in the statement
+	private boolean canSplit(List<List<Integer>> groups) {
+		for (List<Integer> group : groups) {
+			int parameters = 0;
+			for (int action : group) {
+				int parameterStart = parameterStart(action);
+				if (parameterStart != parameters) {
+					int fixed = fixedArguments.nextSetBit(argumentStart(action));
+					if (fixed != -1 && fixed < argumentEnds.get(action)) {
+						return false;
+					}
+				}
+				parameters += parameterEnds.get(action) - parameterStart;
+			}
+		}
+		return true;
+	}
+
+	private GroupResult executeGroup(Connection groupConnection, List<Integer> group) throws SQLException {
+		StringBuilder sql = new StringBuilder("SELECT (");
+		for (int i = 0; i < group.size(); i++) {
+			int action = group.get(i);
+			if (i > 0) {
+				sql.append("),(");
+			}
+			sql.append(builder, fragmentStart(action), fragmentEnds.get(action));
+		}
+		sql.append(')');
+		PreparedStatement ps = groupConnection.prepareStatement(sql.toString());
+		try {
+			int parameters = 0;
+			for (int action : group) {
+				int parameterStart = parameterStart(action);
+				for (int a = argumentStart(action); a < argumentEnds.get(action); a++) {
+					writeArguments.get(a).accept(ps, parameterStart - parameters);
+				}
+				parameters += parameterEnds.get(action) - parameterStart;
+			}
+			ps.setEscapeProcessing(false);
+			ResultSet rs = ps.executeQuery();
+			rs.next();
+			return new GroupResult(groupConnection, ps, rs);
+		} catch (SQLException | RuntimeException e) {
+			ps.close();
+			throw e;
+		}
+	}
+
+	private Executor groupExecutor() {
+		Optional<ExecutorService> executor = locator.tryResolve(ExecutorService.class);
+		if (executor.isPresent()) {
+			return executor.get();
+		}
+		Optional<AsyncQueryExecutor> asyncExecutor = locator.tryResolve(AsyncQueryExecutor.class);
+		return asyncExecutor.isPresent() ? asyncExecutor.get() : ForkJoinPool.commonPool();
+	}
+
+	private void executeParallel(List<List<Integer>> groups) throws SQLException {
+		javax.sql.DataSource dataSource = locator.resolve(javax.sql.DataSource.class);
+		Executor executor = groupExecutor();
+		List<Future<GroupResult>> futures = new ArrayList<>(groups.size() - 1);
+		GroupResult[] groupResults = new GroupResult[groups.size()];
+		SQLException error = null;
+		// all groups read the snapshot exported by the current connection, so they see the same data
+		String snapshot = PostgresSnapshot.begin(connection, null);
+		try {
+			for (int g = 1; g < groups.size(); g++) {
+				List<Integer> group = groups.get(g);
+				FutureTask<GroupResult> task = new FutureTask<>(() -> {
+					Connection groupConnection = dataSource.getConnection();
+					try {
+						PostgresSnapshot.begin(groupConnection, snapshot);
+					} catch (SQLException | RuntimeException e) {
+						groupConnection.close();
+						throw e;
+					}
+					try {
+						return executeGroup(groupConnection, group);
+					} catch (SQLException | RuntimeException e) {
+						try {
+							PostgresSnapshot.end(groupConnection);
+						} finally {
+							groupConnection.close();
+						}
+						throw e;
+					}
+				});
+				executor.execute(task);
+				futures.add(task);
+			}
+			try {
+				groupResults[0] = executeGroup(connection, groups.get(0));
+			} catch (SQLException e) {
+				error = e;
+			} catch (RuntimeException e) {
+				error = new SQLException(e);
+			}
+			for (int g = 1; g < groups.size(); g++) {
+				try {
+					groupResults[g] = futures.get(g - 1).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					if (error == null) error = new SQLException(e);
+				} catch (ExecutionException e) {
+					if (error == null) {
+						error = e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+			for (int g = 0; g < groups.size(); g++) {
+				List<Integer> group = groups.get(g);
+				for (int i = 0; i < group.size(); i++) {
+					int action = group.get(i);
+					results[action] = resultActions.get(action).apply(groupResults[g].resultSet, i + 1);
+				}
+			}
+		} finally {
+			try {
+				for (GroupResult gr : groupResults) {
+					if (gr == null) continue;
+					try {
+						gr.statement.close();
+					} finally {
+						if (gr.connection != connection) {
+							try {
+								PostgresSnapshot.end(gr.connection);
+							} finally {
+								gr.connection.close();
+							}
+						}
+					}
+				}
+			} finally {
+				PostgresSnapshot.end(connection);
+			}
+		}
+	}
+
 	@Override
 	public void close() throws Exception {
 		if (closeConnection) {
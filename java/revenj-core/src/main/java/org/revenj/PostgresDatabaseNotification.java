@@ -1,8 +1,14 @@
 package org.revenj;
 
+import org.postgresql.PGConnection;
 import org.postgresql.PGNotification;
+import org.postgresql.PGProperty;
 import org.postgresql.core.BaseConnection;
 import org.postgresql.core.PGStream;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationConnection;
+import org.postgresql.replication.PGReplicationStream;
+import org.postgresql.replication.fluent.logical.ChainedLogicalStreamBuilder;
 import org.postgresql.util.HostSpec;
 import org.revenj.database.postgres.ConnectionFactoryRevenj;
 import org.revenj.extensibility.SystemState;
@@ -15,13 +21,22 @@ import rx.subjects.PublishSubject;
 import javax.sql.DataSource;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 final class PostgresDatabaseNotification implements EagerNotification, Closeable {
 
@@ -40,8 +55,29 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 	private int retryCount;
 	private final int maxTimeout;
 
+	private final int coalesceMillis;
+	private final ScheduledExecutorService coalescer;
+	private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+	private boolean flushScheduled;
+	private final ConcurrentLinkedQueue<NotifyInfo> ready = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger emitting = new AtomicInteger();
+	private final Map<NotifyInfo, Map<Class<?>, LazyResult<?>>> sharedResults = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final class Pending {
+		final String name;
+		final Operation operation;
+		final LinkedHashSet<String> uris = new LinkedHashSet<>();
+
+		Pending(String name, Operation operation) {
+			this.name = name;
+			this.operation = operation;
+		}
+	}
+
 	private boolean isClosed;
 	private PGStream currentStream;
+	private Connection replicationConnection;
+	private LogSequenceNumber confirmedLsn = LogSequenceNumber.INVALID_LSN;
 
 	public PostgresDatabaseNotification(
 			DataSource dataSource,
@@ -65,11 +101,24 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		} else {
 			maxTimeout = 1000;
 		}
+		coalesceMillis = Utils.intSetting(properties, "revenj.notifications.coalesceMillis", 0);
+		if (coalesceMillis > 0) {
+			coalescer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "revenj-notification-coalescer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			coalescer = null;
+		}
 		if ("disabled".equals(properties.getProperty("revenj.notifications.status"))) {
 			isClosed = true;
 		} else if ("pooling".equals(properties.getProperty("revenj.notifications.type"))) {
 			setupPolling();
 			Runtime.getRuntime().addShutdownHook(new Thread(() -> isClosed = true));
+		} else if ("replication".equals(properties.getProperty("revenj.notifications.type"))) {
+			setupReplication();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> isClosed = true));
 		} else {
 			setupListening();
 			Runtime.getRuntime().addShutdownHook(new Thread(() -> isClosed = true));
@@ -306,7 +355,350 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		}
 	}
 
-	private void processNotification(PostgresReader reader, PGNotification n) throws IOException {
+	private String jdbcUrl() {
+		String jdbcUrl = properties.getProperty("revenj.jdbcUrl");
+		if (jdbcUrl == null || jdbcUrl.isEmpty()) {
+			throw new RuntimeException("Unable to read revenj.jdbcUrl from properties. Replication notification is not supported without it.");
+		}
+		if (!jdbcUrl.startsWith("jdbc:postgresql:") && jdbcUrl.contains("://")) jdbcUrl = "jdbc:postgresql" + jdbcUrl.substring(jdbcUrl.indexOf("://"));
+		return jdbcUrl;
+	}
+
+	private Connection connect(boolean replication) throws SQLException {
+		Properties connProps = new Properties(properties);
+		String user = properties.getProperty("revenj.user");
+		String pass = properties.getProperty("revenj.password");
+		if (user != null && pass != null) {
+			connProps.setProperty("user", user);
+			connProps.setProperty("password", pass);
+		}
+		if (replication) {
+			PGProperty.REPLICATION.set(connProps, "database");
+			PGProperty.ASSUME_MIN_SERVER_VERSION.set(connProps, "10");
+			PGProperty.PREFER_QUERY_MODE.set(connProps, "simple");
+		}
+		return new org.postgresql.Driver().connect(jdbcUrl(), connProps);
+	}
+
+	private void checkSetup(String slot, String publication) throws SQLException {
+		try (Connection connection = connect(false)) {
+			try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM pg_publication WHERE pubname = ?")) {
+				ps.setString(1, publication);
+				try (ResultSet rs = ps.executeQuery()) {
+					if (!rs.next()) {
+						throw new SQLException("Publication " + publication + " does not exist. Create it for the tables which should be tracked.");
+					}
+				}
+			}
+			try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM pg_replication_slots WHERE slot_name = ? AND plugin = 'pgoutput' AND NOT temporary")) {
+				ps.setString(1, slot);
+				try (ResultSet rs = ps.executeQuery()) {
+					if (!rs.next()) {
+						throw new SQLException("Persistent pgoutput replication slot " + slot + " does not exist. Create it with pg_create_logical_replication_slot.");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replication mode consumes row changes from a pgoutput replication stream instead of NOTIFY.
+	 * Publication (revenj.notifications.publication) must exist and contain the tracked tables.
+	 * Table schema.name is used as the notification name and URI is built from the replica identity key columns,
+	 * so tables should use the default replica identity (primary key).
+	 * Slot (revenj.notifications.slot) must be a persistent pgoutput slot, unique per instance,
+	 * so changes are resumed from the confirmed position after reconnect or restart.
+	 * Nothing is created on startup.
+	 * Logical messages (pg_logical_emit_message) are consumed only with revenj.notifications.messages=true,
+	 * which requires Postgres 14+.
+	 */
+	private boolean setupReplication() {
+		retryCount++;
+		if (retryCount > 60) {
+			retryCount = 30;
+		}
+		String slot = properties.getProperty("revenj.notifications.slot");
+		if (slot == null || slot.isEmpty()) {
+			throw new RuntimeException("Unable to read revenj.notifications.slot from properties. Replication notification requires a persistent replication slot.");
+		}
+		String publication = properties.getProperty("revenj.notifications.publication", "revenj_notifications");
+		boolean messages = "true".equals(properties.getProperty("revenj.notifications.messages"));
+		Connection connection = null;
+		try {
+			checkSetup(slot, publication);
+			connection = connect(true);
+			PGReplicationConnection replication = connection.unwrap(PGConnection.class).getReplicationAPI();
+			ChainedLogicalStreamBuilder builder = replication
+					.replicationStream()
+					.logical()
+					.withSlotName(slot)
+					.withStartPosition(confirmedLsn)
+					.withSlotOption("proto_version", "1")
+					.withSlotOption("publication_names", publication)
+					.withStatusInterval(maxTimeout, TimeUnit.MILLISECONDS);
+			if (messages) {
+				builder.withSlotOption("messages", "true");
+			}
+			PGReplicationStream stream = builder.start();
+			// relations are sent again on a new stream
+			relations.clear();
+			transaction = null;
+			replicationConnection = connection;
+			retryCount = 0;
+			Thread thread = new Thread(new Replication(connection, stream));
+			thread.setDaemon(true);
+			thread.start();
+			return true;
+		} catch (Exception ex) {
+			cleanupConnection(connection);
+			try {
+				systemState.notify(new SystemState.SystemEvent("notification", "issue: " + ex.getMessage()));
+				Thread.sleep(1000 * retryCount);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			return false;
+		}
+	}
+
+	private class Replication implements Runnable {
+		private final Connection connection;
+		private final PGReplicationStream stream;
+
+		Replication(Connection connection, PGReplicationStream stream) {
+			this.connection = connection;
+			this.stream = stream;
+		}
+
+		@Override
+		public void run() {
+			PostgresReader reader = new PostgresReader();
+			systemState.notify(new SystemState.SystemEvent("notification", "started"));
+			while (!isClosed) {
+				try {
+					ByteBuffer buffer = stream.readPending();
+					if (buffer != null) {
+						processReplicationMessage(reader, buffer);
+					}
+					// slot keeps everything after confirmed position, so reconnect will resume from here.
+					// position is confirmed only between transactions and when coalesced changes were published
+					LogSequenceNumber lsn = stream.getLastReceiveLSN();
+					if (lsn != LogSequenceNumber.INVALID_LSN && !lsn.equals(confirmedLsn) && transaction == null && !hasPending()) {
+						stream.setAppliedLSN(lsn);
+						stream.setFlushedLSN(lsn);
+						confirmedLsn = lsn;
+					}
+					if (buffer == null) {
+						Thread.sleep(10);
+					}
+				} catch (Exception ex) {
+					systemState.notify(new SystemState.SystemEvent("notification", "error: " + ex.getMessage()));
+					replicationConnection = null;
+					cleanupConnection(connection);
+					while (!isClosed && !setupReplication()) {
+						try {
+							Thread.sleep(1000);
+						} catch (InterruptedException ignore) {
+						}
+					}
+					return;
+				}
+			}
+			try {
+				stream.forceUpdateStatus();
+				stream.close();
+			} catch (SQLException ignore) {
+			}
+			replicationConnection = null;
+			cleanupConnection(connection);
+		}
+	}
+
+	private static final class Relation {
+		final String name;
+		final int[] keys;
+
+		Relation(String name, int[] keys) {
+			this.name = name;
+			this.keys = keys;
+		}
+	}
+
+	private static final class Change {
+		final String name;
+		final Operation operation;
+		final String uri;
+		final PGNotification message;
+
+		Change(String name, Operation operation, String uri, PGNotification message) {
+			this.name = name;
+			this.operation = operation;
+			this.uri = uri;
+			this.message = message;
+		}
+	}
+
+	private final Map<Integer, Relation> relations = new HashMap<>();
+	private volatile List<Change> transaction;
+
+	/**
+	 * Process pgoutput message (protocol version 1).
+	 * Changes are collected until the end of transaction and published on commit.
+	 */
+	void processReplicationMessage(PostgresReader reader, ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() == 0) {
+			return;
+		}
+		switch (buffer.get()) {
+			case 'B':
+				transaction = new ArrayList<>();
+				break;
+			case 'C':
+				List<Change> changes = transaction;
+				transaction = null;
+				if (changes != null) {
+					publishTransaction(reader, changes);
+				}
+				break;
+			case 'R':
+				int oid = buffer.getInt();
+				String namespace = readString(buffer);
+				String table = readString(buffer);
+				buffer.get();
+				int count = buffer.getShort();
+				int[] keys = new int[count];
+				int found = 0;
+				for (int i = 0; i < count; i++) {
+					byte flags = buffer.get();
+					readString(buffer);
+					buffer.getInt();
+					buffer.getInt();
+					if ((flags & 1) != 0) {
+						keys[found++] = i;
+					}
+				}
+				relations.put(oid, new Relation(namespace + "." + table, Arrays.copyOf(keys, found)));
+				break;
+			case 'I':
+				addChange(buffer, Operation.Insert);
+				break;
+			case 'U':
+				addChange(buffer, Operation.Update);
+				break;
+			case 'D':
+				addChange(buffer, Operation.Delete);
+				break;
+			case 'M':
+				boolean transactional = buffer.get() != 0;
+				buffer.getLong();
+				String prefix = readString(buffer);
+				byte[] content = new byte[buffer.getInt()];
+				buffer.get(content);
+				PGNotification message = new org.postgresql.core.Notification(prefix, 0, new String(content, StandardCharsets.UTF_8));
+				if (transactional && transaction != null) {
+					transaction.add(new Change(null, null, null, message));
+				} else {
+					processNotification(reader, message);
+				}
+				break;
+			default:
+				// origin, type and truncate messages are not used
+				break;
+		}
+	}
+
+	private void addChange(ByteBuffer buffer, Operation operation) throws IOException {
+		Relation relation = relations.get(buffer.getInt());
+		if (relation == null) {
+			throw new IOException("Unknown relation in replication stream");
+		}
+		byte kind = buffer.get();
+		if (operation == Operation.Update && (kind == 'K' || kind == 'O')) {
+			// old key is sent only when it has changed, new values follow
+			readTuple(buffer);
+			kind = buffer.get();
+		}
+		String[] values = readTuple(buffer);
+		if (relation.keys.length == 0 || transaction == null) {
+			return;
+		}
+		transaction.add(new Change(relation.name, operation, buildURI(relation.keys, values), null));
+	}
+
+	private static String[] readTuple(ByteBuffer buffer) {
+		String[] values = new String[buffer.getShort()];
+		for (int i = 0; i < values.length; i++) {
+			byte kind = buffer.get();
+			if (kind == 't') {
+				byte[] value = new byte[buffer.getInt()];
+				buffer.get(value);
+				values[i] = new String(value, StandardCharsets.UTF_8);
+			}
+		}
+		return values;
+	}
+
+	// composite keys are joined with / while \ and / within values are escaped with \
+	private static String buildURI(int[] keys, String[] values) {
+		if (keys.length == 1) {
+			return values[keys[0]];
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0) {
+				sb.append('/');
+			}
+			String value = values[keys[i]];
+			if (value == null) {
+				continue;
+			}
+			for (int j = 0; j < value.length(); j++) {
+				char c = value.charAt(j);
+				if (c == '\\' || c == '/') {
+					sb.append('\\');
+				}
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int end = buffer.position();
+		while (buffer.get(end) != 0) {
+			end++;
+		}
+		byte[] value = new byte[end - buffer.position()];
+		buffer.get(value);
+		buffer.get();
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	// consecutive changes of the same table and operation are published together
+	private void publishTransaction(PostgresReader reader, List<Change> changes) throws IOException {
+		int i = 0;
+		while (i < changes.size()) {
+			Change change = changes.get(i);
+			if (change.message != null) {
+				processNotification(reader, change.message);
+				i++;
+				continue;
+			}
+			LinkedHashSet<String> uris = new LinkedHashSet<>();
+			int j = i;
+			while (j < changes.size()
+					&& changes.get(j).message == null
+					&& changes.get(j).name.equals(change.name)
+					&& changes.get(j).operation == change.operation) {
+				uris.add(changes.get(j).uri);
+				j++;
+			}
+			publish(change.name, change.operation, uris.toArray(new String[uris.size()]));
+			i = j;
+		}
+	}
+
+	void processNotification(PostgresReader reader, PGNotification n) throws IOException {
 		if ("events".equals(n.getName()) || "aggregate_roots".equals(n.getName())) {
 			String param = n.getParameter();
 			String ident = param.substring(0, param.indexOf(':'));
@@ -318,16 +710,16 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 				String[] uris = ids.toArray(new String[ids.size()]);
 				switch (op) {
 					case "Update":
-						subject.onNext(new NotifyInfo(ident, Operation.Update, Source.Database, uris));
+						publish(ident, Operation.Update, uris);
 						break;
 					case "Change":
-						subject.onNext(new NotifyInfo(ident, Operation.Change, Source.Database, uris));
+						publish(ident, Operation.Change, uris);
 						break;
 					case "Delete":
-						subject.onNext(new NotifyInfo(ident, Operation.Delete, Source.Database, uris));
+						publish(ident, Operation.Delete, uris);
 						break;
 					default:
-						subject.onNext(new NotifyInfo(ident, Operation.Insert, Source.Database, uris));
+						publish(ident, Operation.Insert, uris);
 						break;
 				}
 			}
@@ -336,6 +728,70 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		}
 	}
 
+	private void publish(String ident, Operation operation, String[] uris) {
+		if (coalescer == null) {
+			subject.onNext(new NotifyInfo(ident, operation, Source.Database, uris));
+			return;
+		}
+		synchronized (pending) {
+			// different operation on the same data source must not be reordered
+			for (Pending p : pending.values()) {
+				if (p.name.equals(ident) && p.operation != operation) {
+					drainPending();
+					break;
+				}
+			}
+			String key = ident + ':' + operation;
+			Pending group = pending.get(key);
+			if (group == null) {
+				group = new Pending(ident, operation);
+				pending.put(key, group);
+			}
+			Collections.addAll(group.uris, uris);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				coalescer.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		emitReady();
+	}
+
+	boolean hasPending() {
+		if (coalescer == null) return false;
+		synchronized (pending) {
+			return !pending.isEmpty();
+		}
+	}
+
+	void flush() {
+		synchronized (pending) {
+			flushScheduled = false;
+			drainPending();
+		}
+		emitReady();
+	}
+
+	// must be called while holding pending lock so groups are queued in arrival order
+	private void drainPending() {
+		for (Pending p : pending.values()) {
+			ready.add(new NotifyInfo(p.name, p.operation, Source.Database, p.uris.toArray(new String[p.uris.size()])));
+		}
+		pending.clear();
+	}
+
+	// subscribers are invoked outside of pending lock, one thread at a time
+	private void emitReady() {
+		if (emitting.getAndIncrement() != 0) return;
+		int missed = 1;
+		do {
+			NotifyInfo info;
+			while ((info = ready.poll()) != null) {
+				subject.onNext(info);
+			}
+			missed = emitting.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
 	private Repository getRepository(Class<?> manifest) {
 		return repositories.computeIfAbsent(manifest, clazz -> {
 			try {
@@ -348,7 +804,16 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 
 	@Override
 	public void notify(NotifyInfo info) {
-		subject.onNext(info);
+		if (coalescer == null) {
+			subject.onNext(info);
+			return;
+		}
+		// coalesced database changes happened before this notification
+		synchronized (pending) {
+			drainPending();
+			ready.add(info);
+		}
+		emitReady();
 	}
 
 	@Override
@@ -370,25 +835,37 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 				targets.put(it.name, set);
 			}
 			return set.contains(manifest);
-		}).map(it -> new TrackInfo<T>(it.uris, new LazyResult<T>(manifest, it.uris)));
+		}).map(it -> new TrackInfo<T>(it.uris, resultFor(manifest, it)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> LazyResult<T> resultFor(Class<T> manifest, NotifyInfo info) {
+		if (coalescer == null || info.source != Source.Database) {
+			return new LazyResult<>(manifest, info.uris, false);
+		}
+		Map<Class<?>, LazyResult<?>> results = sharedResults.computeIfAbsent(info, k -> new ConcurrentHashMap<>());
+		return (LazyResult<T>) results.computeIfAbsent(manifest, m -> new LazyResult<>(manifest, info.uris, true));
 	}
 
 	private class LazyResult<T> implements Callable<List<T>> {
 
 		private final Class<T> manifest;
 		private final String[] uris;
+		private final boolean shared;
 		private List<T> result;
 
-		LazyResult(Class<T> manifest, String[] uris) {
+		LazyResult(Class<T> manifest, String[] uris, boolean shared) {
 			this.manifest = manifest;
 			this.uris = uris;
+			this.shared = shared;
 		}
 
 		@Override
-		public List<T> call() throws Exception {
+		public synchronized List<T> call() throws Exception {
 			if (result == null) {
 				Repository repository = getRepository(manifest);
-				result = repository.find(uris);
+				List<T> found = repository.find(uris);
+				result = shared ? Collections.unmodifiableList(found) : found;
 			}
 			return result;
 		}
@@ -406,6 +883,11 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 
 	public void close() {
 		isClosed = true;
+		cleanupConnection(replicationConnection);
+		if (coalescer != null) {
+			coalescer.shutdown();
+			flush();
+		}
 		try {
 			if (currentStream != null) {
 				currentStream.close();
@@ -0,0 +1,359 @@
+package org.revenj;
+
+import org.revenj.patterns.*;
+import rx.Subscription;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in cache for search/count/exists results.
+ * Only domain types listed in revenj.resultCache setting are cached.
+ * Entries are invalidated by data change notifications for the matching data source,
+ * expire after TTL and total number of entries is bounded.
+ * Cached results are shared between callers, so returned objects should be treated as read only.
+ * Results are not cached within a transaction, since they could include uncommitted changes.
+ * Notifications are raised only for the changed type, so cached snowflakes and SQL sources
+ * built from other types are not invalidated when those types change.
+ * They will be stale until TTL expires, unless {@link #invalidate(Class)} is called explicitly.
+ */
+public final class QueryResultCache implements AutoCloseable {
+
+	private static final int SEARCH = 0;
+	private static final int COUNT = 1;
+	private static final int EXISTS = 2;
+
+	private final DomainModel domainModel;
+	private final String[] names;
+	private final int maxSize;
+	private final long ttl;
+	private final int maxItems;
+	private final Subscription subscription;
+	private final LinkedHashMap<Key, Entry> entries;
+	private final ConcurrentMap<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, Boolean> valueSpecifications = new ConcurrentHashMap<>();
+	private volatile Set<Class<?>> enabled;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	QueryResultCache(DataChangeNotification notifications, DomainModel domainModel, Properties properties) {
+		this(
+				notifications,
+				domainModel,
+				properties.getProperty("revenj.resultCache", "").split(","),
+				Utils.intSetting(properties, "revenj.resultCache.size", 1000),
+				Utils.intSetting(properties, "revenj.resultCache.ttl", 60) * 1000L,
+				Utils.intSetting(properties, "revenj.resultCache.maxItems", 1000));
+	}
+
+	/**
+	 * @param notifications source of data changes used for invalidation
+	 * @param domainModel   lookup for domain types
+	 * @param names         domain object names which should be cached
+	 * @param maxSize       maximum number of cached results
+	 * @param ttlMillis     time after which cached result is discarded
+	 * @param maxItems      search results with more items will not be cached
+	 */
+	public QueryResultCache(
+			DataChangeNotification notifications,
+			DomainModel domainModel,
+			String[] names,
+			int maxSize,
+			long ttlMillis,
+			int maxItems) {
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+		this.domainModel = domainModel;
+		this.names = names;
+		this.maxSize = maxSize;
+		this.ttl = ttlMillis * 1000000L;
+		this.maxItems = maxItems;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > QueryResultCache.this.maxSize;
+			}
+		};
+		this.subscription = notifications.getNotifications().subscribe(info -> invalidate(info.name));
+	}
+
+	private static final class Key {
+		private final Class<?> manifest;
+		private final int kind;
+		private final Object specification;
+		private final Integer limit;
+		private final Integer offset;
+		private final int hash;
+
+		Key(Class<?> manifest, int kind, Object specification, Integer limit, Integer offset) {
+			this.manifest = manifest;
+			this.kind = kind;
+			this.specification = specification;
+			this.limit = limit;
+			this.offset = offset;
+			this.hash = Objects.hash(manifest, kind, specification, limit, offset);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return hash == other.hash
+					&& manifest == other.manifest
+					&& kind == other.kind
+					&& Objects.equals(limit, other.limit)
+					&& Objects.equals(offset, other.offset)
+					&& Objects.equals(specification, other.specification);
+		}
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long expiresAt;
+
+		Entry(Object value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private Set<Class<?>> enabledTypes() {
+		Set<Class<?>> types = enabled;
+		if (types == null) {
+			types = new HashSet<>();
+			for (String name : names) {
+				String trimmed = name.trim();
+				if (trimmed.length() == 0) continue;
+				Optional<Class<?>> manifest = domainModel.find(trimmed);
+				if (manifest.isPresent()) {
+					types.add(manifest.get());
+				}
+			}
+			enabled = types;
+		}
+		return types;
+	}
+
+	public boolean isEnabled(Class<?> manifest) {
+		return enabledTypes().contains(manifest);
+	}
+
+	/**
+	 * Wrap repository so search/count/exists results are cached.
+	 * If caching is not enabled for specified type, repository is returned as is.
+	 *
+	 * @param manifest   domain type
+	 * @param repository repository to wrap
+	 * @param <T>        domain type
+	 * @return caching repository
+	 */
+	public <T extends DataSource> SearchableRepository<T> wrap(Class<T> manifest, SearchableRepository<T> repository) {
+		if (repository == null || !isEnabled(manifest)) {
+			return repository;
+		}
+		return new CachingRepository<>(manifest, repository);
+	}
+
+	/**
+	 * Wrap repository resolved from the specified locator.
+	 * Cache is bypassed when locator has a connection within transaction,
+	 * since it could see its own uncommitted changes.
+	 *
+	 * @param manifest   domain type
+	 * @param repository repository to wrap
+	 * @param locator    scope from which repository was resolved
+	 * @param <T>        domain type
+	 * @return caching repository
+	 */
+	public <T extends DataSource> SearchableRepository<T> wrap(
+			Class<T> manifest,
+			SearchableRepository<T> repository,
+			ServiceLocator locator) {
+		if (inTransaction(locator)) {
+			return repository;
+		}
+		return wrap(manifest, repository);
+	}
+
+	private static boolean inTransaction(ServiceLocator locator) {
+		Optional<Connection> connection = locator.tryResolve(Connection.class);
+		if (!connection.isPresent()) {
+			return false;
+		}
+		try {
+			return !connection.get().getAutoCommit();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	private boolean canCache(Specification<?> specification) {
+		if (specification == null) {
+			return true;
+		}
+		// lambdas and other specifications without value equality can't be used as a key
+		return valueSpecifications.computeIfAbsent(specification.getClass(), clazz -> {
+			try {
+				return clazz.getMethod("equals", Object.class).getDeclaringClass() != Object.class
+						&& clazz.getMethod("hashCode").getDeclaringClass() != Object.class;
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		});
+	}
+
+	private AtomicLong version(Class<?> manifest) {
+		return versions.computeIfAbsent(manifest, m -> new AtomicLong());
+	}
+
+	// entry for a key is always created by the same query, so its value has the expected type
+	@SuppressWarnings("unchecked")
+	private <R> R lookup(Key key, Callable<R> query) {
+		long now = System.nanoTime();
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt - now > 0) {
+					hits.increment();
+					return (R) entry.value;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.increment();
+		AtomicLong version = version(key.manifest);
+		long current = version.get();
+		R result;
+		try {
+			result = query.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		if (result instanceof List && ((List<?>) result).size() > maxItems) {
+			return result;
+		}
+		synchronized (entries) {
+			// don't store result if data has changed while query was running
+			if (version.get() == current) {
+				entries.put(key, new Entry(result, System.nanoTime() + ttl));
+			}
+		}
+		return result;
+	}
+
+	private void invalidate(String name) {
+		Optional<Class<?>> domainType = domainModel.find(name);
+		if (!domainType.isPresent()) {
+			return;
+		}
+		invalidate(domainType.get());
+		for (Class<?> signature : domainType.get().getInterfaces()) {
+			invalidate(signature);
+		}
+	}
+
+	/**
+	 * Discard all cached results for specified type.
+	 * Can be used for types which are not notified on change, such as snowflakes or SQL sources.
+	 *
+	 * @param manifest domain type
+	 */
+	public void invalidate(Class<?> manifest) {
+		if (!isEnabled(manifest)) {
+			return;
+		}
+		synchronized (entries) {
+			version(manifest).incrementAndGet();
+			entries.keySet().removeIf(k -> k.manifest == manifest);
+		}
+		invalidations.increment();
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			for (AtomicLong version : versions.values()) {
+				version.incrementAndGet();
+			}
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	@Override
+	public void close() {
+		subscription.unsubscribe();
+		clear();
+	}
+
+	private final class CachingRepository<T extends DataSource> implements SearchableRepository<T> {
+		private final Class<T> manifest;
+		private final SearchableRepository<T> repository;
+
+		CachingRepository(Class<T> manifest, SearchableRepository<T> repository) {
+			this.manifest = manifest;
+			this.repository = repository;
+		}
+
+		@Override
+		public Query<T> query(Specification<T> specification) {
+			return repository.query(specification);
+		}
+
+		@Override
+		public List<T> search(Specification<T> specification, Integer limit, Integer offset) {
+			if (!canCache(specification)) {
+				return repository.search(specification, limit, offset);
+			}
+			return lookup(
+					new Key(manifest, SEARCH, specification, limit, offset),
+					() -> Collections.unmodifiableList(repository.search(specification, limit, offset)));
+		}
+
+		@Override
+		public long count(Specification<T> specification) {
+			if (!canCache(specification)) {
+				return repository.count(specification);
+			}
+			return lookup(new Key(manifest, COUNT, specification, null, null), () -> repository.count(specification));
+		}
+
+		@Override
+		public boolean exists(Specification<T> specification) {
+			if (!canCache(specification)) {
+				return repository.exists(specification);
+			}
+			return lookup(new Key(manifest, EXISTS, specification, null, null), () -> repository.exists(specification));
+		}
+	}
+}
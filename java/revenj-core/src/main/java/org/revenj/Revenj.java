@@ -87,6 +87,13 @@ public abstract class Revenj {
 		} else if (password != null && password.length() > 0) {
 			dataSource.setPassword(password);
 		}
+		//statements are cached by the driver on each physical connection
+		if (properties.getProperty("revenj.statementCacheSize") != null) {
+			dataSource.setPreparedStatementCacheQueries(Utils.intSetting(properties, "revenj.statementCacheSize", 0));
+		}
+		if (properties.getProperty("revenj.statementPrepareThreshold") != null) {
+			dataSource.setPrepareThreshold(Utils.intSetting(properties, "revenj.statementPrepareThreshold", 0));
+		}
 		return dataSource;
 	}
 
@@ -187,6 +194,12 @@ public abstract class Revenj {
 		container.registerInstance(DataSource.class, dataSource, false);
 		container.registerInstance(ClassLoader.class, loader, false);
 		container.register(GlobalEventStore.class, InstanceScope.SINGLETON);
+		if ("async".equals(properties.getProperty("revenj.eventDispatch"))) {
+			container.registerInstance(
+					EventDispatcher.class,
+					new EventDispatcher(container, dataSource, properties, state),
+					true);
+		}
 		container.register(JsonConverter.class, InstanceScope.SINGLETON);
 		SimpleDomainModel domainModel = new SimpleDomainModel(loader);
 		container.registerInstance(DomainModel.class, domainModel, false);
@@ -208,6 +221,12 @@ public abstract class Revenj {
 		container.registerInstance(EagerNotification.class, databaseNotification, false);
 		container.registerInstance(DataChangeNotification.class, databaseNotification, true);
 		ChangeNotification.registerContainer(container, databaseNotification);
+		if (properties.getProperty("revenj.resultCache", "").length() > 0) {
+			container.registerInstance(
+					QueryResultCache.class,
+					new QueryResultCache(databaseNotification, domainModel, properties),
+					true);
+		}
 		container.registerGenerics(
 				Query.class,
 				(c, arr) -> {
@@ -242,18 +261,18 @@ public abstract class Revenj {
 	}
 
 	public static <T extends DomainEvent> void registerEvents(Container container, PluginLoader plugins, Class<T> manifest, Class<T[]> arrayManifest) throws Exception {
+		Optional<EventDispatcher> dispatcher = container.tryResolve(EventDispatcher.class);
 		Type gt = Utils.makeGenericType(DomainEventHandler.class, manifest);
 		List<Class<DomainEventHandler>> eventHandlers = plugins.find(DomainEventHandler.class, manifest);
 		for (Class<DomainEventHandler> h : eventHandlers) {
-			container.registerType(h, h, InstanceScope.CONTEXT);
-			container.registerType(gt, h, InstanceScope.CONTEXT);
+			registerHandler(container, dispatcher, gt, h);
 		}
 		gt = Utils.makeGenericType(DomainEventHandler.class, arrayManifest);
 		eventHandlers = plugins.find(DomainEventHandler.class, arrayManifest);
 		for (Class<DomainEventHandler> h : eventHandlers) {
-			container.registerType(h, h, InstanceScope.CONTEXT);
-			container.registerType(gt, h, InstanceScope.CONTEXT);
+			registerHandler(container, dispatcher, gt, h);
 		}
+		//lazy handlers read through the submitting transaction, so they are always invoked inline
 		Type ct = Utils.makeGenericType(Callable.class, manifest);
 		gt = Utils.makeGenericType(DomainEventHandler.class, ct);
 		eventHandlers = plugins.find(DomainEventHandler.class, ct);
@@ -269,4 +288,17 @@ public abstract class Revenj {
 			container.registerType(gt, h, InstanceScope.CONTEXT);
 		}
 	}
+
+	private static void registerHandler(
+			Container container,
+			Optional<EventDispatcher> dispatcher,
+			Type type,
+			Class<DomainEventHandler> handler) {
+		container.registerType(handler, handler, InstanceScope.CONTEXT);
+		if (dispatcher.isPresent()) {
+			container.registerFactory(type, c -> dispatcher.get().handler(handler, c), InstanceScope.CONTEXT);
+		} else {
+			container.registerType(type, handler, InstanceScope.CONTEXT);
+		}
+	}
 }
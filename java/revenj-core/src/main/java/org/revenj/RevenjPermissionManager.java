@@ -9,6 +9,7 @@ import rx.Observable;
 import rx.Subscription;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.security.Principal;
 import java.util.*;
 import java.util.concurrent.Callable;
@@ -195,6 +196,59 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 		return data;
 	}
 
+	private List<Filter<?>> applicableFilters(Class<?> manifest, Principal user) {
+		List<Filter<?>> result = new ArrayList<>();
+		for (Filter<?> r : registeredFilters.getOrDefault(manifest, Collections.emptyList())) {
+			if (implies(user, r.role) != r.inverse) {
+				result.add(r);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean hasFilters(Class<?> manifest, Principal user) {
+		if (user == null) return !defaultPermissions;
+		return !applicableFilters(manifest, user).isEmpty();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T, S extends T> List<S> applyFilters(
+			Class<T> manifest,
+			Principal user,
+			Query<S> data,
+			Integer limit,
+			Integer offset) throws IOException {
+		if (user == null && !defaultPermissions) return Collections.emptyList();
+		Query<S> result = data;
+		List<Specification<S>> inMemory = new ArrayList<>();
+		if (user != null) {
+			for (Filter<?> r : applicableFilters(manifest, user)) {
+				Specification<S> specification = (Specification<S>) r.specification;
+				try {
+					result = result.filter(specification);
+				} catch (IllegalArgumentException | UnsupportedOperationException ignore) {
+					inMemory.add(specification);
+				}
+			}
+		}
+		if (inMemory.isEmpty()) {
+			if (offset != null) result = result.skip(offset);
+			if (limit != null) result = result.limit(limit);
+			return result.list();
+		}
+		try (Stream<S> rows = result.stream()) {
+			Stream<S> filtered = rows;
+			for (Specification<S> s : inMemory) {
+				filtered = filtered.filter(s);
+			}
+			if (offset != null) filtered = filtered.skip(offset);
+			if (limit != null) filtered = filtered.limit(limit);
+			return filtered.collect(Collectors.toList());
+		}
+	}
+
 	@Override
 	public <T> Closeable registerFilter(Class<T> manifest, Specification<T> filter, String role, boolean inverse) {
 		List<Filter> registered = registeredFilters.get(manifest);
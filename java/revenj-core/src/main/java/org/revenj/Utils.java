@@ -31,6 +31,18 @@ public abstract class Utils {
 	public static final BigDecimal ZERO_4 = BigDecimal.ZERO.setScale(4);
 	public static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
 
+	public static int intSetting(Properties properties, String name, int defaultValue) {
+		String value = properties != null ? properties.getProperty(name) : null;
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Error parsing " + name + " setting", e);
+		}
+	}
+
 	private static final ConcurrentMap<String, GenericType> typeCache = new ConcurrentHashMap<>();
 
 	private static final DocumentBuilder documentBuilder;
@@ -2,6 +2,7 @@ package org.revenj.database.postgres;
 
 import java.sql.PreparedStatement;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public interface BulkReaderQuery {
 	PostgresWriter getWriter();
@@ -13,4 +14,9 @@ public interface BulkReaderQuery {
 	int getArgumentIndex();
 
 	void addArgument(Consumer<PreparedStatement> statement);
+
+	//offset should be subtracted from argument index when query is split across several statements
+	default void addArgument(ObjIntConsumer<PreparedStatement> statement) {
+		addArgument(ps -> statement.accept(ps, 0));
+	}
 }
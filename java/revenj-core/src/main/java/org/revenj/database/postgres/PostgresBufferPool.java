@@ -0,0 +1,189 @@
+package org.revenj.database.postgres;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of char buffers used by readers and writers.
+ * Buffers are grouped into power of two size classes and each class has a limited number of slots,
+ * so total retained memory is bounded regardless of the number of threads.
+ * Requests above the largest class are allocated directly and never retained.
+ * Size classes which were not used during the idle period are released automatically.
+ * Pool doesn't depend on thread identity, so it works the same with virtual threads.
+ */
+public final class PostgresBufferPool {
+
+	private static final int MIN_CLASS = 6;
+	private static final char[] EMPTY = new char[0];
+	private static final long DEFAULT_IDLE_MILLIS = 60000;
+
+	//readers and writers keep buffers up to this length between uses
+	static final int RETAINED_LENGTH = 64 * 1024;
+
+	public static final PostgresBufferPool DEFAULT = new PostgresBufferPool(20, 1024 * 1024, 64);
+
+	private final int maxClass;
+	private final AtomicReferenceArray<char[]>[] classes;
+	private final AtomicIntegerArray used;
+	private final long idleNanos;
+	private final AtomicLong nextTrim;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder oversize = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * @param maxClass    largest pooled buffer will have 2^maxClass chars
+	 * @param budget      approximate number of chars which can be retained per size class
+	 * @param maxSlots    maximum number of buffers retained per size class
+	 */
+	public PostgresBufferPool(int maxClass, int budget, int maxSlots) {
+		this(maxClass, budget, maxSlots, DEFAULT_IDLE_MILLIS);
+	}
+
+	/**
+	 * @param maxClass    largest pooled buffer will have 2^maxClass chars
+	 * @param budget      approximate number of chars which can be retained per size class
+	 * @param maxSlots    maximum number of buffers retained per size class
+	 * @param idleMillis  retained buffers of a size class are released when it was not used for this long
+	 */
+	@SuppressWarnings("unchecked")
+	public PostgresBufferPool(int maxClass, int budget, int maxSlots, long idleMillis) {
+		if (maxClass < MIN_CLASS || maxClass > 30) {
+			throw new IllegalArgumentException("maxClass must be between " + MIN_CLASS + " and 30");
+		}
+		if (idleMillis <= 0) throw new IllegalArgumentException("idleMillis must be positive");
+		this.maxClass = maxClass;
+		this.used = new AtomicIntegerArray(maxClass + 1);
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		this.nextTrim = new AtomicLong(System.nanoTime() + idleNanos);
+		this.classes = (AtomicReferenceArray<char[]>[]) new AtomicReferenceArray<?>[maxClass + 1];
+		for (int i = MIN_CLASS; i <= maxClass; i++) {
+			int slots = Math.max(1, Math.min(maxSlots, budget >> i));
+			classes[i] = new AtomicReferenceArray<>(slots);
+		}
+	}
+
+	static char[] empty() {
+		return EMPTY;
+	}
+
+	private static int sizeClass(int length) {
+		return length <= (1 << MIN_CLASS) ? MIN_CLASS : 32 - Integer.numberOfLeadingZeros(length - 1);
+	}
+
+	private static int startSlot(int slots) {
+		return (int) (Thread.currentThread().getId() % slots);
+	}
+
+	/**
+	 * Take a buffer with at least minLength chars.
+	 * Buffer content is undefined.
+	 *
+	 * @param minLength required length
+	 * @return pooled or newly allocated buffer
+	 */
+	public char[] take(int minLength) {
+		int sizeClass = sizeClass(minLength);
+		if (sizeClass > maxClass) {
+			oversize.increment();
+			return new char[minLength];
+		}
+		used.lazySet(sizeClass, 1);
+		AtomicReferenceArray<char[]> slots = classes[sizeClass];
+		int length = slots.length();
+		int start = startSlot(length);
+		for (int i = 0; i < length; i++) {
+			int index = (start + i) % length;
+			char[] buffer = slots.get(index);
+			if (buffer != null && slots.compareAndSet(index, buffer, null)) {
+				hits.increment();
+				return buffer;
+			}
+		}
+		misses.increment();
+		return new char[1 << sizeClass];
+	}
+
+	/**
+	 * Return buffer to the pool.
+	 * Only buffers which match a size class are retained and only while there are free slots.
+	 * Caller must not use the buffer after release.
+	 *
+	 * @param buffer buffer which is no longer used
+	 */
+	public void release(char[] buffer) {
+		int length = buffer.length;
+		if (length < (1 << MIN_CLASS) || Integer.bitCount(length) != 1) {
+			return;
+		}
+		trimIdle();
+		int sizeClass = sizeClass(length);
+		if (sizeClass > maxClass) {
+			dropped.increment();
+			return;
+		}
+		AtomicReferenceArray<char[]> slots = classes[sizeClass];
+		int count = slots.length();
+		int start = startSlot(count);
+		for (int i = 0; i < count; i++) {
+			int index = (start + i) % count;
+			if (slots.get(index) == null && slots.compareAndSet(index, null, buffer)) {
+				return;
+			}
+		}
+		dropped.increment();
+	}
+
+	private void trimIdle() {
+		long now = System.nanoTime();
+		long next = nextTrim.get();
+		if (now - next < 0 || !nextTrim.compareAndSet(next, now + idleNanos)) {
+			return;
+		}
+		for (int i = MIN_CLASS; i <= maxClass; i++) {
+			if (used.getAndSet(i, 0) == 0) {
+				clear(classes[i]);
+			}
+		}
+	}
+
+	private static void clear(AtomicReferenceArray<char[]> slots) {
+		for (int j = 0; j < slots.length(); j++) {
+			slots.set(j, null);
+		}
+	}
+
+	/**
+	 * Release retained buffers larger than specified length.
+	 *
+	 * @param maxRetainedLength buffers above this length will be released to GC
+	 */
+	public void trim(int maxRetainedLength) {
+		for (int i = MIN_CLASS; i <= maxClass; i++) {
+			if ((1 << i) <= maxRetainedLength) {
+				continue;
+			}
+			clear(classes[i]);
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getOversizeAllocations() {
+		return oversize.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+}
@@ -268,7 +268,7 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 				columnNames[usedDimensions.size() + i] = usedFacts.get(i);
 			}
 			while (rs.next()) {
-				reader.process(rs.getString(1));
+				reader.process(rs.getBytes(1));
 				reader.read();
 				Map<String, Object> item = new LinkedHashMap<>();
 				for (int i = 0; i < columnNames.length; i++) {
@@ -0,0 +1,147 @@
+package org.revenj.database.postgres;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Query instrumentation which keeps latency histogram and recent slow queries.
+ * Histogram uses power of two buckets in microseconds, so bucket i counts queries
+ * which took less than 2^i microseconds (and more than the previous bucket).
+ * Slow queries can be sampled for EXPLAIN (ANALYZE, BUFFERS) plan.
+ */
+public final class PostgresQueryStatistics implements QueryInstrumentation {
+
+	public static final int BUCKETS = 32;
+
+	private final long slowQueryNanos;
+	private final double explainSampleRate;
+	private final int maxSlowQueries;
+	private final LongAdder[] histogram = new LongAdder[BUCKETS];
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder databaseNanos = new LongAdder();
+	private final LongAdder decodeNanos = new LongAdder();
+	private final LongAdder slowQueries = new LongAdder();
+	private final ArrayDeque<Execution> recentSlow = new ArrayDeque<>();
+
+	/**
+	 * @param slowQueryMillis    queries above this duration are considered slow. Negative value disables slow query log
+	 * @param explainSampleRate  ratio of slow queries which will be explained (0 - 1)
+	 * @param maxSlowQueries     number of most recent slow queries to keep
+	 */
+	public PostgresQueryStatistics(long slowQueryMillis, double explainSampleRate, int maxSlowQueries) {
+		if (explainSampleRate < 0 || explainSampleRate > 1) {
+			throw new IllegalArgumentException("explainSampleRate must be between 0 and 1");
+		}
+		this.slowQueryNanos = slowQueryMillis < 0 ? Long.MAX_VALUE : slowQueryMillis * 1000000L;
+		this.explainSampleRate = explainSampleRate;
+		this.maxSlowQueries = Math.max(0, maxSlowQueries);
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = new LongAdder();
+		}
+	}
+
+	static int bucket(long nanos) {
+		long micros = nanos / 1000;
+		if (micros <= 1) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+	}
+
+	/**
+	 * Upper bound of histogram bucket. Last bucket also contains all longer queries.
+	 *
+	 * @param bucket bucket index
+	 * @return upper bound in microseconds
+	 */
+	public static long bucketUpperBoundMicros(int bucket) {
+		return 1L << bucket;
+	}
+
+	@Override
+	public boolean explain(String sql, long totalNanos) {
+		return totalNanos >= slowQueryNanos
+				&& explainSampleRate > 0
+				&& ThreadLocalRandom.current().nextDouble() < explainSampleRate;
+	}
+
+	@Override
+	public void executed(Execution execution) {
+		long total = execution.getTotalNanos();
+		histogram[bucket(total)].increment();
+		executions.increment();
+		if (execution.rows > 0) {
+			rows.add(execution.rows);
+		}
+		databaseNanos.add(execution.databaseNanos);
+		decodeNanos.add(execution.decodeNanos);
+		if (total >= slowQueryNanos) {
+			slowQueries.increment();
+			if (maxSlowQueries > 0) {
+				synchronized (recentSlow) {
+					if (recentSlow.size() == maxSlowQueries) {
+						recentSlow.removeFirst();
+					}
+					recentSlow.addLast(execution);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Snapshot of latency histogram. Index matches bucketUpperBoundMicros.
+	 *
+	 * @return number of queries per bucket
+	 */
+	public long[] getHistogram() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			result[i] = histogram[i].sum();
+		}
+		return result;
+	}
+
+	public List<Execution> getSlowQueries() {
+		synchronized (recentSlow) {
+			return new ArrayList<>(recentSlow);
+		}
+	}
+
+	public long getExecutions() {
+		return executions.sum();
+	}
+
+	public long getRows() {
+		return rows.sum();
+	}
+
+	public long getDatabaseNanos() {
+		return databaseNanos.sum();
+	}
+
+	public long getDecodeNanos() {
+		return decodeNanos.sum();
+	}
+
+	public long getSlowQueryCount() {
+		return slowQueries.sum();
+	}
+
+	public void reset() {
+		for (LongAdder bucket : histogram) {
+			bucket.reset();
+		}
+		executions.reset();
+		rows.reset();
+		databaseNanos.reset();
+		decodeNanos.reset();
+		slowQueries.reset();
+		synchronized (recentSlow) {
+			recentSlow.clear();
+		}
+	}
+}
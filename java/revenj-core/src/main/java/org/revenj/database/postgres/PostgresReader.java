@@ -3,11 +3,17 @@ package org.revenj.database.postgres;
 import org.revenj.patterns.ServiceLocator;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 public final class PostgresReader implements PostgresBuffer, AutoCloseable {
-	private String input = "";
+	private String text;
+	private char[] input = PostgresBufferPool.empty();
+	private CharsetDecoder decoder;
 	private int length;
 	private int positionInInput;
 	private int last;
@@ -30,10 +36,11 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		return Optional.ofNullable(locator);
 	}
 
-	void reset(ServiceLocator locator) {
+	private void reset(ServiceLocator locator) {
 		positionInBuffer = 0;
 		positionInInput = 0;
 		this.locator = locator;
+		releaseLarge();
 	}
 
 	private static ThreadLocal<PostgresReader> threadReader = new ThreadLocal<PostgresReader>() {
@@ -49,24 +56,91 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		return reader;
 	}
 
+	/**
+	 * Reset the reader and return buffers above the retained size to the pool.
+	 * Reader can still be used after close.
+	 */
 	public void close() {
 		length = positionInBuffer = positionInInput = 0;
 		last = -1;
+		text = null;
+		releaseLarge();
+	}
+
+	private void releaseLarge() {
+		if (input.length > PostgresBufferPool.RETAINED_LENGTH) {
+			char[] old = input;
+			input = PostgresBufferPool.empty();
+			PostgresBufferPool.DEFAULT.release(old);
+		}
+		if (buffer.length > PostgresBufferPool.RETAINED_LENGTH) {
+			char[] old = buffer;
+			buffer = PostgresBufferPool.empty();
+			PostgresBufferPool.DEFAULT.release(old);
+		}
+	}
+
+	private void ensureInput(int required) {
+		if (input.length < required) {
+			char[] old = input;
+			input = PostgresBufferPool.DEFAULT.take(required);
+			PostgresBufferPool.DEFAULT.release(old);
+		}
+	}
+
+	private void grow(int required) {
+		char[] newBuffer = PostgresBufferPool.DEFAULT.take(required);
+		System.arraycopy(buffer, 0, newBuffer, 0, positionInBuffer);
+		char[] old = buffer;
+		buffer = newBuffer;
+		PostgresBufferPool.DEFAULT.release(old);
 	}
 
 	public void process(String input) {
-		this.input = input;
+		this.text = input;
 		this.length = input.length();
 		positionInInput = 0;
 		positionInBuffer = 0;
 		last = 0;
 	}
 
+	public void process(byte[] input) throws IOException {
+		process(ByteBuffer.wrap(input));
+	}
+
+	public void process(byte[] input, int offset, int len) throws IOException {
+		process(ByteBuffer.wrap(input, offset, len));
+	}
+
+	public void process(ByteBuffer input) throws IOException {
+		int len = input.remaining();
+		//UTF-8 never decodes into more chars than there are bytes
+		ensureInput(len);
+		CharBuffer target = CharBuffer.wrap(this.input, 0, len);
+		if (decoder == null) {
+			decoder = StandardCharsets.UTF_8.newDecoder();
+		} else {
+			decoder.reset();
+		}
+		CoderResult result = decoder.decode(input.duplicate(), target, true);
+		if (result.isUnderflow()) {
+			result = decoder.flush(target);
+		}
+		if (!result.isUnderflow()) {
+			result.throwException();
+		}
+		this.text = null;
+		this.length = target.position();
+		positionInInput = 0;
+		positionInBuffer = 0;
+		last = 0;
+	}
+
 	public int read() {
 		if (positionInInput >= length) {
 			return last = -1;
 		}
-		return last = input.charAt(positionInInput++);
+		return last = text != null ? text.charAt(positionInInput++) : input[positionInInput++];
 	}
 
 	public int read(int total) {
@@ -83,7 +157,7 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		if (positionInInput >= length) {
 			return -1;
 		}
-		return input.charAt(positionInInput);
+		return text != null ? text.charAt(positionInInput) : input[positionInInput];
 	}
 
 	public int last() {
@@ -102,6 +176,9 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 
 	@Override
 	public void initBuffer(char c) {
+		if (buffer.length == 0) {
+			grow(1);
+		}
 		positionInBuffer = 1;
 		buffer[0] = c;
 	}
@@ -109,15 +186,15 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 	@Override
 	public void addToBuffer(char c) {
 		if (positionInBuffer == buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			grow(positionInBuffer + 1);
 		}
 		buffer[positionInBuffer++] = c;
 	}
 
 	@Override
 	public void addToBuffer(char[] buf) {
-		if (positionInBuffer + buf.length >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + buf.length);
+		if (positionInBuffer + buf.length > buffer.length) {
+			grow(positionInBuffer + buf.length);
 		}
 		for (int i = 0; i < buf.length; i++) {
 			buffer[positionInBuffer + i] = buf[i];
@@ -127,8 +204,8 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 
 	@Override
 	public void addToBuffer(char[] buf, int len) {
-		if (positionInBuffer + len >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + len);
+		if (positionInBuffer + len > buffer.length) {
+			grow(positionInBuffer + len);
 		}
 		for (int i = 0; i < len; i++) {
 			buffer[positionInBuffer + i] = buf[i];
@@ -138,8 +215,8 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 
 	@Override
 	public void addToBuffer(char[] buf, int offset, int end) {
-		if (positionInBuffer + end >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + end);
+		if (positionInBuffer + end > buffer.length) {
+			grow(positionInBuffer + end);
 		}
 		for (int i = offset; i < end; i++) {
 			buffer[positionInBuffer + i - offset] = buf[i];
@@ -150,24 +227,25 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 	@Override
 	public void addToBuffer(String input) {
 		int len = input.length();
-		if (positionInBuffer + len >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + len);
+		if (positionInBuffer + len > buffer.length) {
+			grow(positionInBuffer + len);
 		}
 		input.getChars(0, len, buffer, positionInBuffer);
 		positionInBuffer += len;
 	}
 
 	public void fillUntil(char c1, char c2) throws IOException {
+		final String text = this.text;
 		int i;
-		for (i = positionInInput; i < input.length(); i++) {
-			char c = input.charAt(i);
+		for (i = positionInInput; i < length; i++) {
+			char c = text != null ? text.charAt(i) : input[i];
 			if (c == c1 || c == c2) {
 				break;
 			}
 			addToBuffer(c);
 		}
 		positionInInput = i;
-		if (positionInInput == input.length()) {
+		if (positionInInput == length) {
 			throw new IOException("End of input detected");
 		}
 	}
@@ -175,15 +253,16 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 	public int fillUntil(char[] target, int offset, char c1, char c2) throws IOException {
 		int i;
 		int start = offset;
-		for (i = positionInInput; i < input.length(); i++) {
-			char c = input.charAt(i);
+		final String text = this.text;
+		for (i = positionInInput; i < length; i++) {
+			char c = text != null ? text.charAt(i) : input[i];
 			if (c == c1 || c == c2) {
 				break;
 			}
 			target[offset++] = c;
 		}
 		positionInInput = i;
-		if (positionInInput == input.length()) {
+		if (positionInInput == length) {
 			throw new IOException("End of input detected");
 		}
 		return offset - start;
@@ -191,8 +270,13 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 
 	public void fillTotal(char[] target, int offset, int count) throws IOException {
 		//TODO: better exceptions
-		for (int i = 0; i < count; i++) {
-			target[i + offset] = input.charAt(positionInInput + i);
+		if (positionInInput + count > length) {
+			throw new IOException("End of input detected");
+		}
+		if (text != null) {
+			text.getChars(positionInInput, positionInInput + count, target, offset);
+		} else {
+			System.arraycopy(input, positionInInput, target, offset, count);
 		}
 		positionInInput += count;
 	}
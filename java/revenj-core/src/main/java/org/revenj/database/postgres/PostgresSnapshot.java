@@ -0,0 +1,52 @@
+package org.revenj.database.postgres;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Shared snapshot for reads split across several connections.
+ * Coordinator exports the snapshot and other connections import it,
+ * so concurrent changes can't produce inconsistent parts of the result.
+ */
+public final class PostgresSnapshot {
+
+	private PostgresSnapshot() {
+	}
+
+	/**
+	 * Start read only repeatable read transaction.
+	 * When snapshot is provided transaction will use it, otherwise new snapshot is exported.
+	 *
+	 * @param connection connection in autocommit mode
+	 * @param snapshot   exported snapshot or null
+	 * @return snapshot used by the transaction
+	 * @throws SQLException when transaction can't be started
+	 */
+	public static String begin(Connection connection, String snapshot) throws SQLException {
+		connection.setAutoCommit(false);
+		try (Statement stmt = connection.createStatement()) {
+			stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+			if (snapshot != null) {
+				stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshot.replace("'", "''") + "'");
+				return snapshot;
+			}
+			try (ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+				rs.next();
+				return rs.getString(1);
+			}
+		} catch (SQLException e) {
+			end(connection);
+			throw e;
+		}
+	}
+
+	public static void end(Connection connection) throws SQLException {
+		try {
+			connection.rollback();
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package org.revenj.database.postgres;
 
-import java.util.Arrays;
-
 public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 	private char[] buffer;
 	public final char[] tmp;
@@ -22,44 +20,74 @@ public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 
 	public static PostgresWriter create() {
 		PostgresWriter writer = threadWriter.get();
-		writer.reset();
+		writer.close();
 		return writer;
 	}
 
+	/**
+	 * Reset the writer and return the buffer to the pool when it's above the retained size.
+	 * Writer can still be used after close.
+	 */
 	public void close() {
 		position = 0;
+		if (buffer.length > PostgresBufferPool.RETAINED_LENGTH) {
+			char[] old = buffer;
+			buffer = PostgresBufferPool.empty();
+			PostgresBufferPool.DEFAULT.release(old);
+		}
+	}
+
+	private void grow(int required) {
+		char[] newBuffer = PostgresBufferPool.DEFAULT.take(required);
+		System.arraycopy(buffer, 0, newBuffer, 0, position);
+		char[] old = buffer;
+		buffer = newBuffer;
+		PostgresBufferPool.DEFAULT.release(old);
 	}
 
 	public void reset() {
 		position = 0;
 	}
 
+	public int length() {
+		return position;
+	}
+
 	public void write(String input) {
 		int len = input.length();
-		if (position + len >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + len);
+		if (position + len > buffer.length) {
+			grow(position + len);
 		}
 		input.getChars(0, len, buffer, position);
 		position += len;
 	}
 
+	public void write(String input, int start, int end) {
+		int len = end - start;
+		if (position + len > buffer.length) {
+			grow(position + len);
+		}
+		input.getChars(start, end, buffer, position);
+		position += len;
+	}
+
 	public void write(byte c) {
 		if (position == buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			grow(position + 1);
 		}
 		buffer[position++] = (char) c;
 	}
 
 	public void write(char c) {
 		if (position == buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			grow(position + 1);
 		}
 		buffer[position++] = c;
 	}
 
 	public void write(char[] buf) {
-		if (position + buf.length >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + buf.length);
+		if (position + buf.length > buffer.length) {
+			grow(position + buf.length);
 		}
 		for (int i = 0; i < buf.length; i++) {
 			buffer[position + i] = buf[i];
@@ -68,8 +96,8 @@ public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 	}
 
 	public void write(char[] buf, int len) {
-		if (position + len >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + len);
+		if (position + len > buffer.length) {
+			grow(position + len);
 		}
 		for (int i = 0; i < len; i++) {
 			buffer[position + i] = buf[i];
@@ -78,8 +106,8 @@ public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 	}
 
 	public void write(char[] buf, int off, int end) {
-		if (position + end >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + end);
+		if (position + end > buffer.length) {
+			grow(position + end);
 		}
 		for (int i = off; i < end; i++) {
 			buffer[position + i - off] = buf[i];
@@ -88,8 +116,8 @@ public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 	}
 
 	public void writeBuffer(int len) {
-		if (position + len >= buffer.length) {
-			buffer = Arrays.copyOf(buffer, buffer.length * 2 + len);
+		if (position + len > buffer.length) {
+			grow(position + len);
 		}
 		for (int i = 0; i < len; i++) {
 			buffer[position + i] = tmp[i];
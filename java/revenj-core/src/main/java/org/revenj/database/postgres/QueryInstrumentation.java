@@ -0,0 +1,60 @@
+package org.revenj.database.postgres;
+
+import java.util.List;
+
+/**
+ * Receives information about executed queries.
+ * Database time covers parameter binding and query execution,
+ * while decode time covers reading and converting returned rows.
+ * Listener is invoked on the executing thread while connection is still in use, so it should be fast.
+ */
+public interface QueryInstrumentation {
+
+	final class Execution {
+		public final Class<?> manifest;
+		public final String operation;
+		public final String sql;
+		public final List<Class<?>> specifications;
+		public final long databaseNanos;
+		public final long decodeNanos;
+		public final int rows;
+		public final String plan;
+
+		public Execution(
+				Class<?> manifest,
+				String operation,
+				String sql,
+				List<Class<?>> specifications,
+				long databaseNanos,
+				long decodeNanos,
+				int rows,
+				String plan) {
+			this.manifest = manifest;
+			this.operation = operation;
+			this.sql = sql;
+			this.specifications = specifications;
+			this.databaseNanos = databaseNanos;
+			this.decodeNanos = decodeNanos;
+			this.rows = rows;
+			this.plan = plan;
+		}
+
+		public long getTotalNanos() {
+			return databaseNanos + decodeNanos;
+		}
+	}
+
+	void executed(Execution execution);
+
+	/**
+	 * Should query be executed again with EXPLAIN (ANALYZE, BUFFERS) to capture its plan.
+	 * Plans are only captured outside of transactions, since failed EXPLAIN would abort the transaction.
+	 *
+	 * @param sql         executed query
+	 * @param totalNanos  duration of the query
+	 * @return capture plan for this execution
+	 */
+	default boolean explain(String sql, long totalNanos) {
+		return false;
+	}
+}
@@ -0,0 +1,196 @@
+package org.revenj.database.postgres.converters;
+
+import org.postgresql.util.PGobject;
+import org.revenj.database.postgres.PostgresWriter;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Encodes arrays and collections of common types directly into Postgres array literal.
+ * Elements are written into the shared writer without intermediate tuples or driver side boxing.
+ * Only homogeneous inputs are supported. When encoder is not found caller should fallback to the driver.
+ */
+public abstract class ArrayParameter {
+
+	private interface ElementWriter {
+		void write(PostgresWriter sw, Object value);
+	}
+
+	private static final class Encoder {
+		final String dbType;
+		final ElementWriter writer;
+
+		Encoder(String dbType, ElementWriter writer) {
+			this.dbType = dbType;
+			this.writer = writer;
+		}
+	}
+
+	private static final Map<Class<?>, Encoder> ENCODERS = new HashMap<>();
+
+	static {
+		ENCODERS.put(Integer.class, new Encoder("int[]", (sw, v) -> writeInt(sw, (Integer) v)));
+		ENCODERS.put(Short.class, new Encoder("smallint[]", (sw, v) -> writeInt(sw, (Short) v)));
+		ENCODERS.put(Long.class, new Encoder("bigint[]", (sw, v) -> writeLong(sw, (Long) v)));
+		ENCODERS.put(String.class, new Encoder("varchar[]", (sw, v) -> writeString(sw, (String) v)));
+		ENCODERS.put(UUID.class, new Encoder("uuid[]", (sw, v) -> writeUuid(sw, (UUID) v)));
+		ENCODERS.put(LocalDate.class, new Encoder("date[]", (sw, v) -> writeDate(sw, (LocalDate) v)));
+		ENCODERS.put(Boolean.class, new Encoder("bool[]", (sw, v) -> sw.write((Boolean) v ? 't' : 'f')));
+		ENCODERS.put(BigDecimal.class, new Encoder("numeric[]", (sw, v) -> sw.write(((BigDecimal) v).toString())));
+	}
+
+	private static void writeInt(PostgresWriter sw, int value) {
+		if (value == Integer.MIN_VALUE) {
+			sw.write("-2147483648");
+		} else {
+			int offset = NumberConverter.serialize(value, sw.tmp);
+			sw.write(sw.tmp, offset, 11);
+		}
+	}
+
+	private static void writeLong(PostgresWriter sw, long value) {
+		if (value == Long.MIN_VALUE) {
+			sw.write("-9223372036854775808");
+		} else {
+			int offset = NumberConverter.serialize(value, sw.tmp);
+			sw.write(sw.tmp, offset, 21);
+		}
+	}
+
+	private static void writeUuid(PostgresWriter sw, UUID value) {
+		UuidConverter.serialize(value, sw.tmp, 0);
+		sw.write(sw.tmp, 36);
+	}
+
+	private static void writeDate(PostgresWriter sw, LocalDate value) {
+		DateConverter.serialize(sw.tmp, 0, value);
+		sw.write(sw.tmp, 10);
+	}
+
+	private static boolean mustQuote(String value) {
+		if (value.isEmpty() || value.length() == 4 && value.equalsIgnoreCase("NULL")) {
+			return true;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\' || c == ',' || c == '{' || c == '}' || Character.isWhitespace(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeString(PostgresWriter sw, String value) {
+		if (!mustQuote(value)) {
+			sw.write(value);
+			return;
+		}
+		sw.write('"');
+		int run = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sw.write(value, run, i);
+				sw.write('\\');
+				run = i;
+			}
+		}
+		sw.write(value, run, value.length());
+		sw.write('"');
+	}
+
+	private static Encoder findEncoder(Iterable<?> elements) {
+		Class<?> manifest = null;
+		for (Object item : elements) {
+			if (item == null) {
+				continue;
+			}
+			if (manifest == null) {
+				manifest = item.getClass();
+			} else if (manifest != item.getClass()) {
+				return null;
+			}
+		}
+		return manifest != null ? ENCODERS.get(manifest) : null;
+	}
+
+	private static void writeElements(PostgresWriter sw, Iterable<?> elements, ElementWriter writer) {
+		sw.write('{');
+		boolean first = true;
+		for (Object item : elements) {
+			if (!first) {
+				sw.write(',');
+			}
+			first = false;
+			if (item == null) {
+				sw.write("NULL");
+			} else {
+				writer.write(sw, item);
+			}
+		}
+		sw.write('}');
+	}
+
+	private static void setValue(PostgresWriter sw, PreparedStatement ps, int index, String dbType) throws SQLException {
+		PGobject pg = new PGobject();
+		pg.setType(dbType);
+		pg.setValue(sw.toString());
+		ps.setObject(index, pg);
+	}
+
+	/**
+	 * Set collection, object array or primitive int/long array as array parameter.
+	 *
+	 * @param sw    writer used for encoding. It will be reset before use
+	 * @param ps    statement
+	 * @param index parameter index
+	 * @param value array or collection
+	 * @return false if value type is not supported and parameter was not set
+	 * @throws SQLException error while setting the parameter
+	 */
+	public static boolean setParameter(PostgresWriter sw, PreparedStatement ps, int index, Object value) throws SQLException {
+		if (value instanceof int[]) {
+			int[] array = (int[]) value;
+			sw.reset();
+			sw.write('{');
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) sw.write(',');
+				writeInt(sw, array[i]);
+			}
+			sw.write('}');
+			setValue(sw, ps, index, "int[]");
+			return true;
+		} else if (value instanceof long[]) {
+			long[] array = (long[]) value;
+			sw.reset();
+			sw.write('{');
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) sw.write(',');
+				writeLong(sw, array[i]);
+			}
+			sw.write('}');
+			setValue(sw, ps, index, "bigint[]");
+			return true;
+		}
+		Iterable<?> elements;
+		if (value instanceof Collection) {
+			elements = (Collection<?>) value;
+		} else if (value instanceof Object[]) {
+			elements = Arrays.asList((Object[]) value);
+		} else {
+			return false;
+		}
+		Encoder encoder = findEncoder(elements);
+		if (encoder == null) {
+			return false;
+		}
+		sw.reset();
+		writeElements(sw, elements, encoder.writer);
+		setValue(sw, ps, index, encoder.dbType);
+		return true;
+	}
+}
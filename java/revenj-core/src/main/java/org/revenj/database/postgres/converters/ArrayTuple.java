@@ -44,11 +44,11 @@ public class ArrayTuple extends PostgresTuple {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write("{}");
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			throw new RuntimeException("Should not happen. Insert array called on array tuple. Nested arrays are invalid construct.");
 		}
 
@@ -66,10 +66,10 @@ public class ArrayTuple extends PostgresTuple {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write("NULL");
 		}
 
@@ -259,7 +259,7 @@ public class ArrayTuple extends PostgresTuple {
 	public void buildTuple(PostgresWriter sw, boolean quote) {
 		Mapping mappings = null;
 		if (quote) {
-			mappings = PostgresTuple::escapeQuote;
+			mappings = QUOTE_MAPPING;
 			sw.write('\'');
 		}
 		sw.write('{');
@@ -267,9 +267,9 @@ public class ArrayTuple extends PostgresTuple {
 		if (e != null) {
 			if (e.mustEscapeArray()) {
 				sw.write('"');
-				e.insertArray(sw, "0", mappings);
+				e.insertArray(sw, arrayEscaping(ROOT), mappings);
 				sw.write('"');
-			} else e.insertArray(sw, "", mappings);
+			} else e.insertArray(sw, ROOT, mappings);
 		} else sw.write("NULL");
 		for (int i = 1; i < elements.length; i++) {
 			sw.write(',');
@@ -277,9 +277,9 @@ public class ArrayTuple extends PostgresTuple {
 			if (e != null) {
 				if (e.mustEscapeArray()) {
 					sw.write('"');
-					e.insertArray(sw, "0", mappings);
+					e.insertArray(sw, arrayEscaping(ROOT), mappings);
 					sw.write('"');
-				} else e.insertArray(sw, "", mappings);
+				} else e.insertArray(sw, ROOT, mappings);
 			} else sw.write("NULL");
 		}
 		sw.write('}');
@@ -288,51 +288,28 @@ public class ArrayTuple extends PostgresTuple {
 		}
 	}
 
-	public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+	public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		sw.write('{');
-		String newEscaping = escaping + "0";
+		int newEscaping = arrayEscaping(escaping);
 		String quote = null;
-		PostgresTuple e = elements[0];
-		if (e != null) {
-			if (e.mustEscapeArray()) {
-				quote = buildQuoteEscape(escaping);
-				if (mappings != null) {
-					for (int x = 0; x < quote.length(); x++) {
-						mappings.map(sw, quote.charAt(x));
-					}
-				} else sw.write(quote);
-				e.insertArray(sw, newEscaping, mappings);
-				if (mappings != null) {
-					for (int x = 0; x < quote.length(); x++) {
-						mappings.map(sw, quote.charAt(x));
-					}
-				} else sw.write(quote);
-			} else e.insertArray(sw, escaping, mappings);
-		} else sw.write("NULL");
-		for (int i = 1; i < elements.length; i++) {
-			sw.write(',');
-			e = elements[i];
+		for (int i = 0; i < elements.length; i++) {
+			if (i > 0) {
+				sw.write(',');
+			}
+			PostgresTuple e = elements[i];
 			if (e != null) {
 				if (e.mustEscapeArray()) {
-					quote = quote != null ? quote : buildQuoteEscape(escaping);
-					if (mappings != null) {
-						for (int x = 0; x < quote.length(); x++) {
-							mappings.map(sw, quote.charAt(x));
-						}
-					} else sw.write(quote);
+					quote = quote != null ? quote : quoteEscape(escaping, mappings);
+					sw.write(quote);
 					e.insertArray(sw, newEscaping, mappings);
-					if (mappings != null) {
-						for (int x = 0; x < quote.length(); x++) {
-							mappings.map(sw, quote.charAt(x));
-						}
-					} else sw.write(quote);
+					sw.write(quote);
 				} else e.insertArray(sw, escaping, mappings);
 			} else sw.write("NULL");
 		}
 		sw.write('}');
 	}
 
-	public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+	public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 		throw new RuntimeException("Should not happen. Insert array called on array tuple. Nested arrays are invalid construct.");
 	}
 }
@@ -98,11 +98,11 @@ public abstract class BoolConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(value);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(value);
 		}
 
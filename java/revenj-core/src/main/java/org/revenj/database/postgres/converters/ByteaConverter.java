@@ -129,22 +129,18 @@ public abstract class ByteaConverter {
 		public void buildTuple(PostgresWriter sw, boolean quote) {
 			if (quote) {
 				sw.write('\'');
-				insertRecord(sw, "", null);
+				insertRecord(sw, ROOT, null);
 				sw.write('\'');
-			} else insertRecord(sw, "", null);
+			} else insertRecord(sw, ROOT, null);
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
-			String pref = buildSlashEscape(escaping.length());
-			if (mappings != null) {
-				for (int x = 0; x < pref.length(); x++)
-					mappings.map(sw, pref.charAt(x));
-			} else sw.write(pref);
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
+			sw.write(slashEscape(escaping, mappings));
 			sw.write('x');
 			buildArray(sw);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			//TODO this is wrong
 			insertRecord(sw, escaping, mappings);
 		}
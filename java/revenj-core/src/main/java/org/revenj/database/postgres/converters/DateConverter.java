@@ -32,7 +32,7 @@ public abstract class DateConverter {
 		sw.addToBuffer(sw.getTempBuffer(), 10);
 	}
 
-	private static void serialize(char[] buf, int start, LocalDate value) {
+	static void serialize(char[] buf, int start, LocalDate value) {
 		//TODO: Java supports wider range of dates
 		NumberConverter.write4(value.getYear(), buf, start);
 		buf[start + 4] = '-';
@@ -137,12 +137,12 @@ public abstract class DateConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			serialize(sw.tmp, 0, value);
 			sw.writeBuffer(10);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			insertRecord(sw, escaping, mappings);
 		}
 
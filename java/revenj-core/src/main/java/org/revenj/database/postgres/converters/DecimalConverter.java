@@ -89,11 +89,11 @@ public abstract class DecimalConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(value.toPlainString());
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(value.toPlainString());
 		}
 
@@ -112,7 +112,7 @@ public abstract class DoubleConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(Double.toString(value));
 		}
 
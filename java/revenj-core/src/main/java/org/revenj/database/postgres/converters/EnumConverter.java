@@ -93,16 +93,12 @@ public abstract class EnumConverter {
 			return quote ? "'" + value + "'" : value;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write(value);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
-			if (mappings != null) {
-				for (int x = 0; x < value.length(); x++) {
-					mappings.map(sw, value.charAt(x));
-				}
-			} else sw.write(value);
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
+			write(sw, value, mappings);
 		}
 	}
 }
@@ -185,99 +185,44 @@ public abstract class HstoreConverter {
 			return true;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
-			String esc = buildQuoteEscape(escaping);
-			String quoteEscape = buildQuoteEscape(escaping + "0");
-			String slashEscape = buildSlashEscape(escaping.length() + 1);
-			int len = value.size();
-			if (mappings != null) {
-				for (Map.Entry<String, String> kv : value.entrySet()) {
-					len--;
-					for (int x = 0; x < esc.length(); x++) {
-						mappings.map(sw, esc.charAt(x));
-					}
-					String key = kv.getKey();
-					for (int i = 0; i < key.length(); i++) {
-						char c = key.charAt(i);
-						if (c == '"') {
-							for (int x = 0; x < quoteEscape.length(); x++) {
-								mappings.map(sw, quoteEscape.charAt(x));
-							}
-						} else if (c == '\\') {
-							for (int x = 0; x < slashEscape.length(); x++) {
-								mappings.map(sw, slashEscape.charAt(x));
-							}
-						} else mappings.map(sw, c);
-					}
-					for (int x = 0; x < esc.length(); x++) {
-						mappings.map(sw, esc.charAt(x));
-					}
-					sw.write("=>");
-					if (kv.getKey() == null) {
-						sw.write("NULL");
-					} else {
-						for (int x = 0; x < esc.length(); x++) {
-							mappings.map(sw, esc.charAt(x));
-						}
-						String val = kv.getValue();
-						for (int i = 0; i < val.length(); i++) {
-							char c = val.charAt(i);
-							if (c == '"') {
-								for (int x = 0; x < quoteEscape.length(); x++) {
-									mappings.map(sw, quoteEscape.charAt(x));
-								}
-							} else if (c == '\\') {
-								for (int x = 0; x < slashEscape.length(); x++) {
-									mappings.map(sw, slashEscape.charAt(x));
-								}
-							} else mappings.map(sw, c);
-						}
-						for (int x = 0; x < esc.length(); x++) {
-							mappings.map(sw, esc.charAt(x));
-						}
-					}
-					if (len > 0) {
-						sw.write(", ");
-					}
+		private static void writeEscaped(PostgresWriter sw, String value, String quoteEscape, String slashEscape, Mapping mappings) {
+			int run = 0;
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					write(sw, value, run, i, mappings);
+					sw.write(c == '"' ? quoteEscape : slashEscape);
+					run = i + 1;
 				}
-			} else {
-				for (Map.Entry<String, String> kv : value.entrySet()) {
-					len--;
+			}
+			write(sw, value, run, value.length(), mappings);
+		}
+
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
+			String esc = quoteEscape(escaping, mappings);
+			String quoteEscape = quoteEscape(arrayEscaping(escaping), mappings);
+			String slashEscape = slashEscape(arrayEscaping(escaping), mappings);
+			int len = value.size();
+			for (Map.Entry<String, String> kv : value.entrySet()) {
+				len--;
+				sw.write(esc);
+				writeEscaped(sw, kv.getKey(), quoteEscape, slashEscape, mappings);
+				sw.write(esc);
+				sw.write("=>");
+				if (kv.getValue() == null) {
+					sw.write("NULL");
+				} else {
 					sw.write(esc);
-					String key = kv.getKey();
-					for (int i = 0; i < key.length(); i++) {
-						char c = key.charAt(i);
-						if (c == '"') {
-							sw.write(quoteEscape);
-						} else if (c == '\\') {
-							sw.write(slashEscape);
-						} else sw.write(c);
-					}
+					writeEscaped(sw, kv.getValue(), quoteEscape, slashEscape, mappings);
 					sw.write(esc);
-					sw.write("=>");
-					if (kv.getValue() == null) {
-						sw.write("NULL");
-					} else {
-						sw.write(esc);
-						String val = kv.getValue();
-						for (int i = 0; i < val.length(); i++) {
-							char c = val.charAt(i);
-							if (c == '"') {
-								sw.write(quoteEscape);
-							} else if (c == '\\') {
-								sw.write(slashEscape);
-							} else sw.write(c);
-						}
-						sw.write(esc);
-					}
-					if (len > 0) {
-						sw.write(", ");
-					}
+				}
+				if (len > 0) {
+					sw.write(", ");
 				}
 			}
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			insertRecord(sw, escaping, mappings);
 		}
 	}
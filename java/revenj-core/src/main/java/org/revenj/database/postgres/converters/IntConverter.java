@@ -124,7 +124,7 @@ public abstract class IntConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			int offset = NumberConverter.serialize(value, sw.tmp);
 			sw.write(sw.tmp, offset, 11);
 		}
@@ -123,7 +123,7 @@ public abstract class LongConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			int offset = NumberConverter.serialize(value, sw.tmp);
 			sw.write(sw.tmp, offset, 21);
 		}
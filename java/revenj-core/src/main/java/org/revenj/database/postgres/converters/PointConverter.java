@@ -184,7 +184,7 @@ public abstract class PointConverter {
 			return true;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write('(');
 			sw.write(Double.toString(value.getX()));
 			sw.write(',');
@@ -192,7 +192,7 @@ public abstract class PointConverter {
 			sw.write(')');
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			insertRecord(sw, escaping, mappings);
 		}
 
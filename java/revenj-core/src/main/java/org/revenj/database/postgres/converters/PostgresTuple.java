@@ -2,15 +2,22 @@ package org.revenj.database.postgres.converters;
 
 import org.revenj.database.postgres.PostgresWriter;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 public abstract class PostgresTuple {
 
-	private static final ConcurrentHashMap<String, String> QUOTE_ESCAPE = new ConcurrentHashMap<String, String>();
+	/**
+	 * Escaping is tracked as a bit path prefixed with a sentinel bit.
+	 * Each nested record appends 1 and each nested array appends 0,
+	 * so depth and quote escape can be computed without building strings.
+	 */
+	static final int ROOT = 1;
+
+	private static final int CACHED_DEPTH = 10;
+	private static final int CACHED_SLASHES = 20;
+	private static final String[] QUOTE_ESCAPES = new String[2 << CACHED_DEPTH];
 	private static final String[] SLASHES;
 
 	static {
-		SLASHES = new String[20];
+		SLASHES = new String[CACHED_SLASHES];
 		for (int i = 0; i < SLASHES.length; i++) {
 			SLASHES[i] = new String(new char[1 << i]).replace('\0', '\\');
 		}
@@ -20,22 +27,91 @@ public abstract class PostgresTuple {
 
 	abstract boolean mustEscapeArray();
 
-	abstract void insertRecord(PostgresWriter writer, String escaping, Mapping mappings);
+	abstract void insertRecord(PostgresWriter writer, int escaping, Mapping mappings);
 
-	void insertArray(PostgresWriter writer, String escaping, Mapping mappings) {
+	void insertArray(PostgresWriter writer, int escaping, Mapping mappings) {
 		insertRecord(writer, escaping, mappings);
 	}
 
-	interface Mapping {
-		void map(PostgresWriter writer, char arg);
+	/**
+	 * Additional escaping applied to the whole output, eg. quoting for SQL literal or COPY text format.
+	 * Escape sequences are mapped once and cached per mapping, so they can be written in bulk.
+	 */
+	static abstract class Mapping {
+		private final String[] quoteEscapes = new String[2 << CACHED_DEPTH];
+		private final String[] slashEscapes = new String[CACHED_SLASHES];
+
+		abstract void map(PostgresWriter writer, char arg);
+
+		void write(PostgresWriter writer, String value, int start, int end) {
+			for (int i = start; i < end; i++) {
+				map(writer, value.charAt(i));
+			}
+		}
+
+		private String mapped(String escape) {
+			//called while thread writers are in use
+			try (PostgresWriter sw = new PostgresWriter()) {
+				write(sw, escape, 0, escape.length());
+				return sw.toString();
+			}
+		}
+	}
+
+	static final Mapping QUOTE_MAPPING = new Mapping() {
+		@Override
+		void map(PostgresWriter writer, char arg) {
+			escapeQuote(writer, arg);
+		}
+
+		@Override
+		void write(PostgresWriter writer, String value, int start, int end) {
+			int run = start;
+			for (int i = start; i < end; i++) {
+				if (value.charAt(i) == '\'') {
+					writer.write(value, run, i + 1);
+					writer.write('\'');
+					run = i + 1;
+				}
+			}
+			writer.write(value, run, end);
+		}
+	};
+
+	static int recordEscaping(int escaping) {
+		return escaping << 1 | 1;
+	}
+
+	static int arrayEscaping(int escaping) {
+		return escaping << 1;
+	}
+
+	static int escapingDepth(int escaping) {
+		return 31 - Integer.numberOfLeadingZeros(escaping);
+	}
+
+	static void write(PostgresWriter sw, String value, Mapping mappings) {
+		if (mappings != null) {
+			mappings.write(sw, value, 0, value.length());
+		} else {
+			sw.write(value);
+		}
+	}
+
+	static void write(PostgresWriter sw, String value, int start, int end, Mapping mappings) {
+		if (mappings != null) {
+			mappings.write(sw, value, start, end);
+		} else {
+			sw.write(value, start, end);
+		}
 	}
 
 	public void buildTuple(PostgresWriter sw, boolean quote) {
 		if (quote) {
 			sw.write('\'');
-			insertRecord(sw, "", PostgresTuple::escapeQuote);
+			insertRecord(sw, ROOT, QUOTE_MAPPING);
 			sw.write('\'');
-		} else insertRecord(sw, "", null);
+		} else insertRecord(sw, ROOT, null);
 	}
 
 	protected static ThreadLocal<PostgresWriter> threadWriter = new ThreadLocal<PostgresWriter>() {
@@ -89,22 +165,85 @@ public abstract class PostgresTuple {
 		}
 	}
 
-	public static String buildQuoteEscape(String escaping) {
-		String result = QUOTE_ESCAPE.get(escaping);
-		if (result != null) return result;
+	/**
+	 * Quote escape for the specified escaping path.
+	 * Escapes up to CACHED_DEPTH levels are computed once and reused.
+	 */
+	static String quoteEscape(int escaping) {
+		if (escaping < QUOTE_ESCAPES.length) {
+			String result = QUOTE_ESCAPES[escaping];
+			if (result == null) {
+				result = computeQuoteEscape(escaping);
+				QUOTE_ESCAPES[escaping] = result;
+			}
+			return result;
+		}
+		return computeQuoteEscape(escaping);
+	}
+
+	/**
+	 * Quote escape with mapping already applied.
+	 */
+	static String quoteEscape(int escaping, Mapping mappings) {
+		if (mappings == null) {
+			return quoteEscape(escaping);
+		} else if (escaping < mappings.quoteEscapes.length) {
+			String result = mappings.quoteEscapes[escaping];
+			if (result == null) {
+				result = mappings.mapped(quoteEscape(escaping));
+				mappings.quoteEscapes[escaping] = result;
+			}
+			return result;
+		}
+		return mappings.mapped(quoteEscape(escaping));
+	}
+
+	/**
+	 * Slash escape with mapping already applied.
+	 */
+	static String slashEscape(int escaping, Mapping mappings) {
+		int depth = escapingDepth(escaping);
+		if (mappings == null) {
+			return buildSlashEscape(depth);
+		} else if (depth < mappings.slashEscapes.length) {
+			String result = mappings.slashEscapes[depth];
+			if (result == null) {
+				result = mappings.mapped(buildSlashEscape(depth));
+				mappings.slashEscapes[depth] = result;
+			}
+			return result;
+		}
+		return mappings.mapped(buildSlashEscape(depth));
+	}
+
+	private static String computeQuoteEscape(int escaping) {
 		StringBuilder sb = new StringBuilder();
 		sb.append('"');
-		for (int j = escaping.length() - 1; j >= 0; j--) {
-			if (escaping.charAt(j) == '1') {
-				int len = sb.length();
-				for (int i = 0; i < len; i++) {
-					sb.insert(i * 2, sb.charAt(i * 2));
+		for (int path = escaping; path > ROOT; path >>>= 1) {
+			StringBuilder next = new StringBuilder(sb.length() * 2);
+			boolean record = (path & 1) == 1;
+			for (int i = 0; i < sb.length(); i++) {
+				char c = sb.charAt(i);
+				if (record || c == '\\' || c == '"') {
+					next.append(record ? c : '\\');
 				}
-			} else sb = new StringBuilder(sb.toString().replace("\\", "\\\\").replace("\"", "\\\""));
+				next.append(c);
+			}
+			sb = next;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Escaping as a string of record (1) and array (0) levels.
+	 * Kept for compatibility, tuples track escaping numerically.
+	 */
+	public static String buildQuoteEscape(String escaping) {
+		int path = ROOT;
+		for (int i = 0; i < escaping.length(); i++) {
+			path = escaping.charAt(i) == '1' ? recordEscaping(path) : arrayEscaping(path);
 		}
-		result = sb.toString();
-		QUOTE_ESCAPE.put(escaping, result);
-		return result;
+		return quoteEscape(path);
 	}
 
 	public static String buildSlashEscape(int len) {
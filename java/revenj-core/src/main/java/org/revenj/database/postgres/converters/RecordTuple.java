@@ -32,11 +32,11 @@ public class RecordTuple extends PostgresTuple {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write("()");
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write("()");
 		}
 
@@ -54,10 +54,10 @@ public class RecordTuple extends PostgresTuple {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			sw.write("NULL");
 		}
 
@@ -75,80 +75,56 @@ public class RecordTuple extends PostgresTuple {
 	}
 
 	public String buildTuple(boolean quote) {
-		PostgresWriter sw = threadWriter.get();
-		sw.reset();
-		Mapping mappings = null;
-		if (quote) {
-			mappings = PostgresTuple::escapeQuote;
-			sw.write('\'');
-		}
-		sw.write('(');
-		PostgresTuple p = properties[0];
-		if (p != null) {
-			if (p.mustEscapeRecord()) {
-				sw.write('"');
-				p.insertRecord(sw, "1", mappings);
-				sw.write('"');
-			} else p.insertRecord(sw, "", mappings);
-		}
-		for (int i = 1; i < properties.length; i++) {
-			sw.write(',');
-			p = properties[i];
+		try (PostgresWriter sw = threadWriter.get()) {
+			sw.reset();
+			Mapping mappings = null;
+			if (quote) {
+				mappings = QUOTE_MAPPING;
+				sw.write('\'');
+			}
+			sw.write('(');
+			PostgresTuple p = properties[0];
 			if (p != null) {
 				if (p.mustEscapeRecord()) {
 					sw.write('"');
-					p.insertRecord(sw, "1", mappings);
+					p.insertRecord(sw, recordEscaping(ROOT), mappings);
 					sw.write('"');
-				} else p.insertRecord(sw, "", mappings);
+				} else p.insertRecord(sw, ROOT, mappings);
 			}
+			for (int i = 1; i < properties.length; i++) {
+				sw.write(',');
+				p = properties[i];
+				if (p != null) {
+					if (p.mustEscapeRecord()) {
+						sw.write('"');
+						p.insertRecord(sw, recordEscaping(ROOT), mappings);
+						sw.write('"');
+					} else p.insertRecord(sw, ROOT, mappings);
+				}
+			}
+			sw.write(')');
+			if (quote) {
+				sw.write('\'');
+			}
+			return sw.toString();
 		}
-		sw.write(')');
-		if (quote) {
-			sw.write('\'');
-		}
-		return sw.toString();
 	}
 
-	public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+	public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		sw.write('(');
-		String newEscaping = escaping + '1';
+		int newEscaping = recordEscaping(escaping);
 		String quote = null;
-		PostgresTuple p = properties[0];
-		if (p != null) {
-			if (p.mustEscapeRecord()) {
-				quote = buildQuoteEscape(escaping);
-				if (mappings != null) {
-					for (int x = 0; x < quote.length(); x++) {
-						mappings.map(sw, quote.charAt(x));
-					}
-				} else sw.write(quote);
-				p.insertRecord(sw, newEscaping, mappings);
-				if (mappings != null) {
-					for (int x = 0; x < quote.length(); x++) {
-						mappings.map(sw, quote.charAt(x));
-					}
-				} else sw.write(quote);
-			} else p.insertRecord(sw, escaping, mappings);
-		}
-		for (int i = 1; i < properties.length; i++) {
-			sw.write(',');
-			p = properties[i];
+		for (int i = 0; i < properties.length; i++) {
+			if (i > 0) {
+				sw.write(',');
+			}
+			PostgresTuple p = properties[i];
 			if (p != null) {
 				if (p.mustEscapeRecord()) {
-					//TODO: build quote only once and reuse it, instead of looping all the time
-					quote = quote != null ? quote : buildQuoteEscape(escaping);
-					if (mappings != null) {
-						for (int x = 0; x < quote.length(); x++) {
-							mappings.map(sw, quote.charAt(x));
-						}
-					} else
-						sw.write(quote);
+					quote = quote != null ? quote : quoteEscape(escaping, mappings);
+					sw.write(quote);
 					p.insertRecord(sw, newEscaping, mappings);
-					if (mappings != null) {
-						for (int x = 0; x < quote.length(); x++) {
-							mappings.map(sw, quote.charAt(x));
-						}
-					} else sw.write(quote);
+					sw.write(quote);
 				} else p.insertRecord(sw, escaping, mappings);
 			}
 		}
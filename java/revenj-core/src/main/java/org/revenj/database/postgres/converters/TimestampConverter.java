@@ -400,12 +400,12 @@ public abstract class TimestampConverter {
 			return true;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			int len = serialize(sw.tmp, 0, value);
 			sw.writeBuffer(len);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			insertRecord(sw, escaping, mappings);
 		}
 
@@ -438,12 +438,12 @@ public abstract class TimestampConverter {
 			return true;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			int len = serialize(sw.tmp, 0, value);
 			sw.write(sw.tmp, 0, len);
 		}
 
-		public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 			insertRecord(sw, escaping, mappings);
 		}
 
@@ -40,7 +40,7 @@ public abstract class UuidConverter {
 		sw.addToBuffer(sw.getTempBuffer(), 36);
 	}
 
-	private static void serialize(UUID value, char[] buf, int start) {
+	static void serialize(UUID value, char[] buf, int start) {
 		final long hi = value.getMostSignificantBits();
 		final long lo = value.getLeastSignificantBits();
 		final int hi1 = (int) (hi >> 32);
@@ -218,7 +218,7 @@ public abstract class UuidConverter {
 			return false;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 			serialize(value, sw.tmp, 0);
 			sw.writeBuffer(36);
 		}
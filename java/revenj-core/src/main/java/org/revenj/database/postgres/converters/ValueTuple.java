@@ -77,59 +77,36 @@ public class ValueTuple extends PostgresTuple {
 		return quote ? "'" + value.replace("'", "''") + "'" : value;
 	}
 
-	private void escape(PostgresWriter sw, String escaping, Mapping mappings) {
+	private void escape(PostgresWriter sw, int escaping, Mapping mappings) {
 		String quoteEscape = null;
 		String slashEscape = null;
-		if (mappings != null) {
-			for (int i = 0; i < value.length(); i++) {
-				char c = value.charAt(i);
-				if (c == '"') {
-					quoteEscape = quoteEscape != null ? quoteEscape : buildQuoteEscape(escaping);
-					for (int x = 0; x < quoteEscape.length(); x++) {
-						mappings.map(sw, quoteEscape.charAt(x));
-					}
-				} else if (c == '\\') {
-					slashEscape = slashEscape != null ? slashEscape : buildSlashEscape(escaping.length());
-					for (int x = 0; x < slashEscape.length(); x++) {
-						mappings.map(sw, slashEscape.charAt(x));
-					}
-				} else mappings.map(sw, c);
-			}
-		} else {
-			for (int i = 0; i < value.length(); i++) {
-				char c = value.charAt(i);
-				if (c == '"') {
-					quoteEscape = quoteEscape != null ? quoteEscape : buildQuoteEscape(escaping);
-					sw.write(quoteEscape);
-				} else if (c == '\\') {
-					slashEscape = slashEscape != null ? slashEscape : buildSlashEscape(escaping.length());
-					sw.write(slashEscape);
-				} else sw.write(c);
+		int run = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				write(sw, value, run, i, mappings);
+				quoteEscape = quoteEscape != null ? quoteEscape : quoteEscape(escaping, mappings);
+				sw.write(quoteEscape);
+				run = i + 1;
+			} else if (c == '\\') {
+				write(sw, value, run, i, mappings);
+				slashEscape = slashEscape != null ? slashEscape : slashEscape(escaping, mappings);
+				sw.write(slashEscape);
+				run = i + 1;
 			}
 		}
+		write(sw, value, run, value.length(), mappings);
 	}
 
-	public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+	public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		if (hasMarkers) escape(sw, escaping, mappings);
-		else {
-			if (mappings != null) {
-				for (int x = 0; x < value.length(); x++) {
-					mappings.map(sw, value.charAt(x));
-				}
-			} else if (value != null) sw.write(value);
-		}
+		else if (value != null) write(sw, value, mappings);
 	}
 
-	public void insertArray(PostgresWriter sw, String escaping, Mapping mappings) {
+	public void insertArray(PostgresWriter sw, int escaping, Mapping mappings) {
 		if (value == null) sw.write("NULL");
 		else if (hasMarkers) escape(sw, escaping, mappings);
-		else {
-			if (mappings != null) {
-				for (int x = 0; x < value.length(); x++) {
-					mappings.map(sw, value.charAt(x));
-				}
-			} else sw.write(value);
-		}
+		else write(sw, value, mappings);
 	}
 
 	static class EmptyValueTuple extends PostgresTuple {
@@ -141,7 +118,7 @@ public class ValueTuple extends PostgresTuple {
 			return true;
 		}
 
-		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+		public void insertRecord(PostgresWriter sw, int escaping, Mapping mappings) {
 		}
 
 		public String buildTuple(boolean quote) {
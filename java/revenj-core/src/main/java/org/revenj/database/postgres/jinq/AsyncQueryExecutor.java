@@ -0,0 +1,22 @@
+package org.revenj.database.postgres.jinq;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+public final class AsyncQueryExecutor implements Executor, AutoCloseable {
+	private final ExecutorService executor;
+
+	AsyncQueryExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		executor.execute(command);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+}
@@ -3,16 +3,25 @@ package org.revenj.database.postgres.jinq;
 import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
 import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
 import org.jinq.rebased.org.objectweb.asm.Type;
+import org.revenj.Utils;
 import org.revenj.extensibility.Container;
 import org.revenj.patterns.Query;
+import org.revenj.database.postgres.PostgresQueryStatistics;
+import org.revenj.database.postgres.QueryInstrumentation;
 import org.revenj.database.postgres.QueryProvider;
+import org.revenj.database.postgres.jinq.transform.LambdaAnalysisCache;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
 
 import javax.sql.DataSource;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class JinqMetaModel extends MetamodelUtil {
 
@@ -34,7 +43,41 @@ public final class JinqMetaModel extends MetamodelUtil {
 		container.registerInstance(JinqMetaModel.class, metamodel, false);
 		DataSource dataSource = container.resolve(DataSource.class);
 		ClassLoader loader = container.resolve(ClassLoader.class);
-		container.registerInstance(QueryProvider.class, new RevenjQueryProvider(metamodel, loader, dataSource), false);
+		Optional<Properties> properties = container.tryResolve(Properties.class);
+		Properties settings = properties.orElse(null);
+		int fetchSize = Utils.intSetting(settings, "revenj.fetchSize", RevenjQueryComposer.DEFAULT_FETCH_SIZE);
+		QueryInstrumentation instrumentation = container.tryResolve(QueryInstrumentation.class).orElse(null);
+		if (instrumentation == null && properties.isPresent() && "true".equals(properties.get().getProperty("revenj.queryStatistics"))) {
+			PostgresQueryStatistics statistics = new PostgresQueryStatistics(
+					Utils.intSetting(settings, "revenj.slowQueryMillis", -1),
+					Utils.intSetting(settings, "revenj.explainSamplePercent", 0) / 100.0,
+					Utils.intSetting(settings, "revenj.slowQueryLogSize", 100));
+			container.registerInstance(PostgresQueryStatistics.class, statistics, false);
+			container.registerInstance(QueryInstrumentation.class, statistics, false);
+			instrumentation = statistics;
+		}
+		String lambdaCache = properties.isPresent() ? properties.get().getProperty("revenj.lambdaCache") : null;
+		if (lambdaCache != null && lambdaCache.length() > 0) {
+			LambdaAnalysisCache analysisCache = new LambdaAnalysisCache(new File(lambdaCache));
+			metamodel.setAnalysisCache(analysisCache);
+			container.registerInstance(LambdaAnalysisCache.class, analysisCache, true);
+		}
+		int queryCacheSize = Utils.intSetting(settings, "revenj.queryCacheSize", RevenjQueryComposerCache.DEFAULT_SIZE);
+		RevenjQueryComposerCache queryCache = new RevenjQueryComposerCache(queryCacheSize);
+		container.registerInstance(RevenjQueryComposerCache.class, queryCache, false);
+		int asyncThreads = Utils.intSetting(settings, "revenj.asyncThreads", 0);
+		ExecutorService asyncExecutor = null;
+		if (asyncThreads > 0) {
+			AtomicInteger counter = new AtomicInteger();
+			asyncExecutor = Executors.newFixedThreadPool(asyncThreads, r -> {
+				Thread thread = new Thread(r, "revenj-async-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			container.registerInstance(AsyncQueryExecutor.class, new AsyncQueryExecutor(asyncExecutor), true);
+		}
+		int maxParallelism = Utils.intSetting(settings, "revenj.maxParallelism", Runtime.getRuntime().availableProcessors());
+		container.registerInstance(QueryProvider.class, new RevenjQueryProvider(metamodel, loader, dataSource, fetchSize, instrumentation, queryCache, asyncExecutor, maxParallelism), false);
 		return metamodel;
 	}
 
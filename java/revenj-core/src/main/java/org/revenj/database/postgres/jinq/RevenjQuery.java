@@ -7,57 +7,206 @@ import org.revenj.database.postgres.jinq.transform.LambdaInfo;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 final class RevenjQuery<T extends DataSource> implements Query<T> {
 	private final RevenjQueryComposer<T> queryComposer;
+	private final List<Compare<T, ?>> orders;
+	private final Comparator<T> comparator;
+	private final Executor executor;
+	private final int maxParallelism;
+	private final int parallelism;
 
 	public RevenjQuery(RevenjQueryComposer<T> query) {
+		this(query, null, Runtime.getRuntime().availableProcessors());
+	}
+
+	RevenjQuery(RevenjQueryComposer<T> query, Executor executor, int maxParallelism) {
+		queryComposer = query;
+		this.orders = Collections.emptyList();
+		this.comparator = null;
+		this.executor = executor;
+		this.maxParallelism = maxParallelism;
+		this.parallelism = 1;
+	}
+
+	private RevenjQuery(RevenjQuery<T> base, RevenjQueryComposer<T> query, List<Compare<T, ?>> orders, Comparator<T> comparator, int parallelism) {
 		queryComposer = query;
+		this.orders = orders;
+		this.comparator = comparator;
+		this.executor = base.executor;
+		this.maxParallelism = base.maxParallelism;
+		this.parallelism = parallelism;
+	}
+
+	private RevenjQuery<T> next(RevenjQueryComposer<T> query) {
+		return new RevenjQuery<>(this, query, orders, comparator, parallelism);
 	}
 
 	static <U extends DataSource> RevenjQuery<U> makeQueryStream(RevenjQueryComposer<U> query) {
 		return new RevenjQuery<>(query);
 	}
 
-	private RevenjQueryComposer applyWhere(Specification predicate) {
+	private RevenjQueryComposer<T> applyWhere(Specification<? super T> predicate) {
 		if (predicate == null) {
 			return queryComposer;
 		}
-		return queryComposer.where(LambdaInfo.analyze(queryComposer.rewrite(predicate), queryComposer.getLambdaCount(), true));
+		return queryComposer.where(LambdaInfo.analyze(queryComposer.rewrite(predicate), queryComposer.getLambdaCount(), true), predicate.getClass());
 	}
 
-	private RevenjQueryComposer applyOrder(Compare order, boolean ascending) {
+	private RevenjQueryComposer<T> applyOrder(Compare<T, ?> order, boolean ascending) {
 		return queryComposer.sortedBy(LambdaInfo.analyze(order, queryComposer.getLambdaCount(), true), ascending);
 	}
 
 	@Override
 	public Query<T> filter(Specification<T> predicate) {
 		if (predicate == null) return this;
-		return makeQueryStream(applyWhere(predicate));
+		RevenjQueryComposer<T> newComposer = applyWhere(predicate);
+		if (newComposer == null) {
+			throw new IllegalArgumentException("Unable to translate specification " + predicate.getClass().getName() + " to SQL");
+		}
+		return next(newComposer);
 	}
 
 	@Override
 	public Query<T> skip(long n) {
-		RevenjQueryComposer newComposer = this.queryComposer.skip(n);
-		return makeQueryStream(newComposer);
+		RevenjQueryComposer<T> newComposer = this.queryComposer.skip(n);
+		return next(newComposer);
 	}
 
 	@Override
 	public Query<T> limit(long n) {
-		RevenjQueryComposer newComposer = this.queryComposer.limit(n);
-		return makeQueryStream(newComposer);
+		RevenjQueryComposer<T> newComposer = this.queryComposer.limit(n);
+		return next(newComposer);
+	}
+
+	private RevenjQuery<T> withOrder(RevenjQueryComposer<T> query, Compare<T, ?> order, boolean ascending) {
+		List<Compare<T, ?>> newOrders = new ArrayList<>(orders.size() + 1);
+		newOrders.addAll(orders);
+		newOrders.add(order);
+		// same as Postgres default: nulls are larger than any value
+		Comparator<T> byKey = (a, b) -> compareKeys(order.compare(a), order.compare(b));
+		if (!ascending) {
+			byKey = byKey.reversed();
+		}
+		return new RevenjQuery<>(this, query, newOrders, comparator == null ? byKey : comparator.thenComparing(byKey), parallelism);
+	}
+
+	// sort keys are only compared when they are results of the same Compare, so they are of the same comparable type
+	@SuppressWarnings("unchecked")
+	private static int compareKeys(Object left, Object right) {
+		// same as Postgres default: nulls are larger than any value
+		if (left == null || right == null) {
+			return left == right ? 0 : left == null ? 1 : -1;
+		}
+		return ((Comparable<Object>) left).compareTo(right);
 	}
 
 	@Override
 	public <V> Query<T> sortedBy(Compare<T, V> order) {
-		return makeQueryStream(applyOrder(order, true));
+		return withOrder(applyOrder(order, true), order, true);
 	}
 
 	@Override
 	public <V> Query<T> sortedDescendingBy(Compare<T, V> order) {
-		return makeQueryStream(applyOrder(order, false));
+		return withOrder(applyOrder(order, false), order, false);
+	}
+
+	@Override
+	public Query<T> parallel(int degree) {
+		return new RevenjQuery<>(this, queryComposer, orders, comparator, Math.max(1, Math.min(degree, maxParallelism)));
+	}
+
+	@Override
+	public Query<T> after(T item) {
+		if (item == null) return this;
+		Object[] keys = new Object[orders.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = orders.get(i).compare(item);
+		}
+		return afterKeys(keys);
+	}
+
+	@Override
+	public Query<T> afterKeys(Object... keys) {
+		if (keys == null) return this;
+		RevenjQueryComposer<T> newComposer = queryComposer != null ? queryComposer.after(keys) : null;
+		if (newComposer == null) {
+			throw new IllegalArgumentException("Unable to translate seek pagination to SQL. Query must be sorted by translatable expressions and can't be limited, skipped, aggregated or distinct");
+		}
+		return next(newComposer);
+	}
+
+	@Override
+	public <V> List<V> select(Select<T, V> projection) throws IOException {
+		RevenjQueryComposer<V> projected = queryComposer.select(LambdaInfo.analyze(projection, queryComposer.getLambdaCount(), false));
+		if (projected == null) {
+			// projection can't be translated to SQL, so it will be applied on loaded objects
+			return Query.super.select(projection);
+		}
+		try {
+			return projected.project();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Execute<R> {
+		R execute() throws IOException;
+	}
+
+	private <R> CompletableFuture<R> async(Execute<R> action, Executor executor) {
+		if (queryComposer.isConnectionBound()) {
+			// connection is shared within the transaction, so query is executed in place
+			CompletableFuture<R> result = new CompletableFuture<>();
+			try {
+				result.complete(action.execute());
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+		Supplier<R> supplier = () -> {
+			try {
+				return action.execute();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		};
+		return executor != null ? CompletableFuture.supplyAsync(supplier, executor) : CompletableFuture.supplyAsync(supplier);
+	}
+
+	@Override
+	public CompletableFuture<List<T>> listAsync(Executor executor) {
+		return async(this::list, executor);
+	}
+
+	@Override
+	public CompletableFuture<List<T>> listAsync() {
+		return async(this::list, executor);
+	}
+
+	@Override
+	public CompletableFuture<Long> countAsync(Executor executor) {
+		return async(this::count, executor);
+	}
+
+	@Override
+	public CompletableFuture<Long> countAsync() {
+		return async(this::count, executor);
 	}
 
 	@Override
@@ -118,9 +267,48 @@ final class RevenjQuery<T extends DataSource> implements Query<T> {
 	@Override
 	public List<T> list() throws IOException {
 		try {
+			if (parallelism > 1 && (comparator == null || hasCollationIndependentOrder())) {
+				return queryComposer.toList(parallelism, executor, comparator);
+			}
 			return queryComposer.toList();
 		} catch (SQLException e) {
 			throw new IOException(e);
 		}
 	}
+
+	// partitions are merged in Java, so only keys which compare the same way in Postgres and Java can be merged
+	private static final Set<String> COLLATION_INDEPENDENT = new HashSet<>(Arrays.asList(
+			"I", "J", "S", "B", "D", "F", "Z",
+			"Ljava/lang/Integer;", "Ljava/lang/Long;", "Ljava/lang/Short;", "Ljava/lang/Byte;",
+			"Ljava/lang/Double;", "Ljava/lang/Float;", "Ljava/lang/Boolean;",
+			"Ljava/math/BigDecimal;", "Ljava/math/BigInteger;",
+			"Ljava/time/LocalDate;", "Ljava/time/LocalDateTime;", "Ljava/time/OffsetDateTime;"));
+
+	private boolean hasCollationIndependentOrder() {
+		for (Compare<T, ?> order : orders) {
+			LambdaInfo info = LambdaInfo.analyze(order, 0, false);
+			if (info == null || !info.hasLambdaObject() || !COLLATION_INDEPENDENT.contains(info.getReturnTypeDescriptor())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Compiled<T> compile() {
+		Compiled<T> compiled = queryComposer != null ? queryComposer.compile() : null;
+		if (compiled == null) {
+			throw new IllegalArgumentException("Query can't be compiled since it depends on lambda fields or untranslatable lambdas. Use lambdas which capture only local variables");
+		}
+		return compiled;
+	}
+
+	@Override
+	public Stream<T> stream() throws IOException {
+		try {
+			return queryComposer.stream();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
 }
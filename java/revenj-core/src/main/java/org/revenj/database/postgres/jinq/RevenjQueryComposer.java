@@ -7,19 +7,32 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.postgresql.core.Oid;
 import org.postgresql.util.PGobject;
 import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Query;
 import org.revenj.patterns.Specification;
 import org.revenj.database.postgres.ObjectConverter;
+import org.revenj.database.postgres.PostgresSnapshot;
 import org.revenj.database.postgres.PostgresWriter;
+import org.revenj.database.postgres.QueryInstrumentation;
+import org.revenj.database.postgres.converters.ArrayParameter;
 import org.revenj.database.postgres.converters.ArrayTuple;
 import org.revenj.database.postgres.jinq.jpqlquery.GeneratedQueryParameter;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.database.postgres.jinq.jpqlquery.ProjectionRowReader;
+import org.revenj.database.postgres.jinq.jpqlquery.RowReader;
 import org.revenj.Utils;
 import org.revenj.database.postgres.converters.PostgresTuple;
 import org.revenj.database.postgres.converters.TimestampConverter;
@@ -28,9 +41,13 @@ import org.revenj.database.postgres.jinq.transform.RevenjNoLambdaQueryTransform;
 import org.revenj.database.postgres.jinq.transform.RevenjOneLambdaQueryTransform;
 import org.revenj.database.postgres.jinq.transform.RevenjQueryTransformConfiguration;
 import org.revenj.database.postgres.jinq.transform.LambdaAnalysis;
+import org.revenj.database.postgres.jinq.transform.BoundLambdaInfo;
+import org.revenj.database.postgres.jinq.transform.KeysetTransform;
 import org.revenj.database.postgres.jinq.transform.LambdaInfo;
 import org.revenj.database.postgres.jinq.transform.LimitSkipTransform;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
+import org.revenj.database.postgres.jinq.transform.PartitionTransform;
+import org.revenj.database.postgres.jinq.transform.ProjectionTransform;
 import org.revenj.database.postgres.jinq.transform.QueryTransformException;
 import org.revenj.database.postgres.jinq.transform.SortingTransform;
 import org.revenj.database.postgres.jinq.transform.WhereTransform;
@@ -67,6 +84,8 @@ public final class RevenjQueryComposer<T> {
 		addMapping(byte[].class, "bytea", Oid.BYTEA, Types.BLOB);
 	}
 
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
 	@FunctionalInterface
 	public interface GetConnection {
 		Connection get() throws SQLException;
@@ -86,6 +105,8 @@ public final class RevenjQueryComposer<T> {
 	private final ReleaseConnection releaseConnection;
 	private final JinqPostgresQuery<T> query;
 	private final Class<T> manifest;
+	private final int fetchSize;
+	private final QueryInstrumentation instrumentation;
 
 	/**
 	 * Holds the chain of lambdas that were used to create this query. This is needed
@@ -95,6 +116,11 @@ public final class RevenjQueryComposer<T> {
 	 */
 	private final List<LambdaInfo> lambdas = new ArrayList<>();
 
+	/**
+	 * Specifications used for filtering, reported to instrumentation as query origin.
+	 */
+	private final List<Class<?>> specifications = new ArrayList<>();
+
 	public int getLambdaCount() {
 		return lambdas.size();
 	}
@@ -105,7 +131,8 @@ public final class RevenjQueryComposer<T> {
 			JinqPostgresQuery<T> query,
 			List<LambdaInfo> chainedLambdas,
 			LambdaInfo... additionalLambdas) {
-		this(base.metamodel, base.loader, manifest, base.cachedQueries, base.connection, base.locator, base.getConnection, base.releaseConnection, query, chainedLambdas, additionalLambdas);
+		this(base.metamodel, base.loader, manifest, base.cachedQueries, base.connection, base.locator, base.getConnection, base.releaseConnection, base.fetchSize, base.instrumentation, query, chainedLambdas, additionalLambdas);
+		specifications.addAll(base.specifications);
 	}
 
 	private RevenjQueryComposer(
@@ -117,6 +144,8 @@ public final class RevenjQueryComposer<T> {
 			ServiceLocator locator,
 			GetConnection getConnection,
 			ReleaseConnection releaseConnection,
+			int fetchSize,
+			QueryInstrumentation instrumentation,
 			JinqPostgresQuery<T> query,
 			List<LambdaInfo> chainedLambdas,
 			LambdaInfo... additionalLambdas) {
@@ -128,6 +157,8 @@ public final class RevenjQueryComposer<T> {
 		this.locator = locator;
 		this.getConnection = getConnection;
 		this.releaseConnection = releaseConnection;
+		this.fetchSize = fetchSize;
+		this.instrumentation = instrumentation;
 		this.query = query;
 		lambdas.addAll(chainedLambdas);
 		for (LambdaInfo newLambda : additionalLambdas) {
@@ -144,6 +175,50 @@ public final class RevenjQueryComposer<T> {
 			ServiceLocator locator,
 			GetConnection getConnection,
 			ReleaseConnection releaseConnection) {
+		return findAll(metamodel, loader, manifest, cachedQueries, conn, locator, getConnection, releaseConnection, DEFAULT_FETCH_SIZE);
+	}
+
+	public static <T extends DataSource> RevenjQuery<T> findAll(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			Class<T> manifest,
+			RevenjQueryComposerCache cachedQueries,
+			Connection conn,
+			ServiceLocator locator,
+			GetConnection getConnection,
+			ReleaseConnection releaseConnection,
+			int fetchSize) {
+		return findAll(metamodel, loader, manifest, cachedQueries, conn, locator, getConnection, releaseConnection, fetchSize, null, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static <T extends DataSource> RevenjQuery<T> findAll(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			Class<T> manifest,
+			RevenjQueryComposerCache cachedQueries,
+			Connection conn,
+			ServiceLocator locator,
+			GetConnection getConnection,
+			ReleaseConnection releaseConnection,
+			int fetchSize,
+			Executor asyncExecutor,
+			int maxParallelism) {
+		return findAll(metamodel, loader, manifest, cachedQueries, conn, locator, getConnection, releaseConnection, fetchSize, null, asyncExecutor, maxParallelism);
+	}
+
+	public static <T extends DataSource> RevenjQuery<T> findAll(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			Class<T> manifest,
+			RevenjQueryComposerCache cachedQueries,
+			Connection conn,
+			ServiceLocator locator,
+			GetConnection getConnection,
+			ReleaseConnection releaseConnection,
+			int fetchSize,
+			QueryInstrumentation instrumentation,
+			Executor asyncExecutor,
+			int maxParallelism) {
 		String sqlSource = metamodel.dataSourceNameFromClass(manifest);
 		Optional<JinqPostgresQuery<?>> cachedQuery = cachedQueries.findCachedFindAll(sqlSource);
 		if (cachedQuery == null) {
@@ -162,9 +237,11 @@ public final class RevenjQueryComposer<T> {
 						locator,
 						getConnection,
 						releaseConnection,
+						fetchSize,
+						instrumentation,
 						findAllQuery,
 						new ArrayList<>());
-		return new RevenjQuery<>(queryComposer);
+		return new RevenjQuery<>(queryComposer, asyncExecutor, maxParallelism);
 	}
 
 	private static String getTypeFor(Class<?> manifest) {
@@ -221,16 +298,11 @@ public final class RevenjQueryComposer<T> {
 				}
 				continue;
 			}
-			Object[] elements = null;
+			Collection<?> elements = null;
 			if (value instanceof Collection) {
-				Collection collection = (Collection) value;
-				elements = new Object[collection.size()];
-				int x = 0;
-				for (Object item : collection) {
-					elements[x++] = item;
-				}
+				elements = (Collection<?>) value;
 			} else if (value instanceof Object[]) {
-				elements = (Object[]) value;
+				elements = Arrays.asList((Object[]) value);
 			}
 			if (elements == null) {
 				Class<?> manifest = value.getClass();
@@ -250,10 +322,13 @@ public final class RevenjQueryComposer<T> {
 					//DateConverter.setParameter(writer, ps, i + 1, (LocalDate) value);
 				} else if (value instanceof LocalDateTime) {
 					if (writer == null) writer = PostgresWriter.create();
-					TimestampConverter.setParameter(writer, ps, i + 1, (LocalDateTime) value);
+					TimestampConverter.setParameter(writer, ps, i + 1 + parameterOffset, (LocalDateTime) value);
 				} else if (value instanceof OffsetDateTime) {
 					if (writer == null) writer = PostgresWriter.create();
-					TimestampConverter.setParameter(writer, ps, i + 1, (OffsetDateTime) value);
+					TimestampConverter.setParameter(writer, ps, i + 1 + parameterOffset, (OffsetDateTime) value);
+				} else if (value instanceof int[] || value instanceof long[]) {
+					if (writer == null) writer = PostgresWriter.create();
+					ArrayParameter.setParameter(writer, ps, i + 1 + parameterOffset, value);
 				} else {
 					ps.setObject(i + 1 + parameterOffset, value);
 				}
@@ -270,16 +345,21 @@ public final class RevenjQueryComposer<T> {
 					ObjectConverter<Object> oc = converter.get();
 					if (writer == null) writer = PostgresWriter.create();
 					writer.reset();
-					PostgresTuple tuple = ArrayTuple.create(elements, oc::to);
+					PostgresTuple tuple = ArrayTuple.create((Collection<Object>) elements, oc::to);
 					PGobject pgo = new PGobject();
 					pgo.setType(oc.getDbName() + "[]");
 					tuple.buildTuple(writer, false);
 					pgo.setValue(writer.toString());
 					ps.setObject(i + 1 + parameterOffset, pgo);
 				} else {
-					String type = getElementTypeFor(elements);
+					if (writer == null) writer = PostgresWriter.create();
+					if (ArrayParameter.setParameter(writer, ps, i + 1 + parameterOffset, value)) {
+						continue;
+					}
+					Object[] array = elements.toArray();
+					String type = getElementTypeFor(array);
 					if ("unknown".equals(type)) {
-						if (elements.length == 0) {
+						if (array.length == 0) {
 							//TODO: provide null instead !?
 							if (param.sqlType != null) {
 								PGobject pgo = new PGobject();
@@ -294,8 +374,7 @@ public final class RevenjQueryComposer<T> {
 							// throw meaningfull error!?
 						}
 					}
-					java.sql.Array array = connection.createArrayOf(type, elements);
-					ps.setArray(i + 1 + parameterOffset, array);
+					ps.setArray(i + 1 + parameterOffset, connection.createArrayOf(type, array));
 				}
 			}
 		}
@@ -316,6 +395,16 @@ public final class RevenjQueryComposer<T> {
 		});
 	}
 
+	// converter is registered for the manifest type
+	@SuppressWarnings("unchecked")
+	private ObjectConverter<T> converter() {
+		return getConverterFor(locator, manifest).get();
+	}
+
+	public boolean isConnectionBound() {
+		return connection != null;
+	}
+
 	private Connection getConnection() throws SQLException {
 		if (connection != null) return connection;
 		return getConnection.get();
@@ -325,36 +414,97 @@ public final class RevenjQueryComposer<T> {
 		if (this.connection == null) releaseConnection.release(connection);
 	}
 
+	private void instrument(
+			Connection connection,
+			String operation,
+			String sql,
+			List<GeneratedQueryParameter> parameters,
+			List<LambdaInfo> boundLambdas,
+			long start,
+			long executed,
+			int rows) {
+		final long finished = System.nanoTime();
+		final String plan = instrumentation.explain(sql, finished - start)
+				? explain(connection, sql, parameters, boundLambdas)
+				: null;
+		instrumentation.executed(
+				new QueryInstrumentation.Execution(
+						manifest,
+						operation,
+						sql,
+						Collections.unmodifiableList(specifications),
+						executed - start,
+						finished - executed,
+						rows,
+						plan));
+	}
+
+	private String explain(Connection connection, String sql, List<GeneratedQueryParameter> parameters, List<LambdaInfo> boundLambdas) {
+		try {
+			if (!connection.getAutoCommit()) {
+				return null;
+			}
+			try (PreparedStatement ps = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+				fillQueryParameters(connection, locator, ps, 0, parameters, boundLambdas);
+				StringBuilder plan = new StringBuilder();
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						plan.append(rs.getString(1)).append('\n');
+					}
+				}
+				return plan.toString();
+			}
+		} catch (SQLException ignore) {
+			return null;
+		}
+	}
+
 	public long count() throws SQLException {
-		final String queryString = query.getQueryString();
+		final String sql = "SELECT COUNT(*) FROM (" + query.getQueryString() + ") sq";
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM (" + queryString + ") sq")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			try (final ResultSet rs = ps.executeQuery()) {
-				if (rs.next()) {
-					return rs.getLong(1);
+		try {
+			final long start = System.nanoTime();
+			final PreparedStatement ps = connection.prepareStatement(sql);
+			try {
+				fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+				final long result;
+				try (final ResultSet rs = ps.executeQuery()) {
+					result = rs.next() ? rs.getLong(1) : 0;
+				}
+				if (instrumentation != null) {
+					instrument(connection, "count", sql, query.getQueryParameters(), lambdas, start, System.nanoTime(), 1);
 				}
+				return result;
+			} finally {
+				ps.close();
 			}
 		} finally {
 			releaseConnection(connection);
 		}
-		return 0;
 	}
 
 	public boolean any() throws SQLException {
-		final String queryString = query.getQueryString();
+		final String sql = "SELECT EXISTS(" + query.getQueryString() + ")";
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT EXISTS(" + queryString + ")")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			try (final ResultSet rs = ps.executeQuery()) {
-				if (rs.next()) {
-					return rs.getBoolean(1);
+		try {
+			final long start = System.nanoTime();
+			final PreparedStatement ps = connection.prepareStatement(sql);
+			try {
+				fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+				final boolean result;
+				try (final ResultSet rs = ps.executeQuery()) {
+					result = rs.next() && rs.getBoolean(1);
 				}
+				if (instrumentation != null) {
+					instrument(connection, "any", sql, query.getQueryParameters(), lambdas, start, System.nanoTime(), 1);
+				}
+				return result;
+			} finally {
+				ps.close();
 			}
 		} finally {
 			releaseConnection(connection);
 		}
-		return false;
 	}
 
 	//TODO: optimize
@@ -366,65 +516,438 @@ public final class RevenjQueryComposer<T> {
 	}
 
 	public boolean none() throws SQLException {
-		final String queryString = query.getQueryString();
+		final String sql = "SELECT NOT EXISTS(" + query.getQueryString() + ")";
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT NOT EXISTS(" + queryString + ")")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			try (final ResultSet rs = ps.executeQuery()) {
-				if (rs.next()) {
-					return rs.getBoolean(1);
+		try {
+			final long start = System.nanoTime();
+			final PreparedStatement ps = connection.prepareStatement(sql);
+			try {
+				fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+				final boolean result;
+				try (final ResultSet rs = ps.executeQuery()) {
+					result = !rs.next() || rs.getBoolean(1);
+				}
+				if (instrumentation != null) {
+					instrument(connection, "none", sql, query.getQueryParameters(), lambdas, start, System.nanoTime(), 1);
 				}
+				return result;
+			} finally {
+				ps.close();
 			}
 		} finally {
 			releaseConnection(connection);
 		}
-		return true;
 	}
 
 	public Optional<T> first() throws SQLException {
 		final String queryString = query.getQueryString();
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement(queryString)) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			final PostgresReader pr = new PostgresReader(locator);
+		try {
+			final long start = System.nanoTime();
+			final PreparedStatement ps = connection.prepareStatement(queryString);
 			try {
-				final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
+				fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+				final ObjectConverter<T> converter = converter();
+				final long executed;
+				T result = null;
 				try (final ResultSet rs = ps.executeQuery()) {
+					executed = System.nanoTime();
 					if (rs.next()) {
-						pr.process(rs.getString(1));
-						return Optional.of(converter.from(pr));
+						try (PostgresReader pr = new PostgresReader(locator)) {
+							pr.process(rs.getBytes(1));
+							result = converter.from(pr);
+						}
 					}
 				}
+				if (instrumentation != null) {
+					instrument(connection, "first", queryString, query.getQueryParameters(), lambdas, start, executed, result != null ? 1 : 0);
+				}
+				return Optional.ofNullable(result);
 			} catch (IOException e) {
 				throw new SQLException(e);
 			} finally {
-				releaseConnection(connection);
+				ps.close();
 			}
-			return Optional.empty();
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
 	public List<T> toList() throws SQLException {
-		final String queryString = query.getQueryString();
+		return executeList(
+				query.getQueryString(),
+				query.getQueryParameters(),
+				converter(),
+				lambdas);
+	}
+
+	private List<T> executeList(
+			final String queryString,
+			final List<GeneratedQueryParameter> parameters,
+			final ObjectConverter<T> converter,
+			final List<LambdaInfo> boundLambdas) throws SQLException {
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement(queryString)) {
+		try {
+			return executeList(connection, queryString, parameters, converter, boundLambdas);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	private List<T> executeList(
+			final Connection connection,
+			final String queryString,
+			final List<GeneratedQueryParameter> parameters,
+			final ObjectConverter<T> converter,
+			final List<LambdaInfo> boundLambdas) throws SQLException {
+		final ArrayList<T> result = new ArrayList<>();
+		final long start = System.nanoTime();
+		final PreparedStatement ps = connection.prepareStatement(queryString);
+		try {
+			fillQueryParameters(connection, locator, ps, 0, parameters, boundLambdas);
+			final long executed;
+			try (final ResultSet rs = ps.executeQuery()) {
+				executed = System.nanoTime();
+				try (PostgresReader pr = new PostgresReader(locator)) {
+					while (rs.next()) {
+						pr.process(rs.getBytes(1));
+						result.add(converter.from(pr));
+					}
+				}
+			}
+			if (instrumentation != null) {
+				instrument(connection, "list", queryString, parameters, boundLambdas, start, executed, result.size());
+			}
+		} catch (IOException e) {
+			throw new SQLException(e);
+		} finally {
+			ps.close();
+		}
+		return result;
+	}
+
+	public Stream<T> stream() throws SQLException {
+		final String queryString = query.getQueryString();
+		final Connection connection = getConnection();
+		final boolean changeAutoCommit;
+		final PreparedStatement ps;
+		final ResultSet rs;
+		final ObjectConverter<T> converter;
+		try {
+			changeAutoCommit = connection.getAutoCommit();
+			if (changeAutoCommit) {
+				connection.setAutoCommit(false);
+			}
+		} catch (SQLException e) {
+			releaseConnection(connection);
+			throw e;
+		}
+		try {
+			ps = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		} catch (SQLException e) {
+			closeStream(connection, changeAutoCommit, null, null);
+			throw e;
+		}
+		try {
+			ps.setFetchSize(fetchSize);
 			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			final PostgresReader pr = new PostgresReader(locator);
-			final ArrayList<T> result = new ArrayList<>();
+			converter = converter();
+			rs = ps.executeQuery();
+		} catch (SQLException e) {
+			closeStream(connection, changeAutoCommit, ps, null);
+			throw e;
+		}
+		final PostgresReader pr = new PostgresReader(locator);
+		final Runnable close = () -> {
+			pr.close();
 			try {
-				final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
-				try (final ResultSet rs = ps.executeQuery()) {
+				closeStream(connection, changeAutoCommit, ps, rs);
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		};
+		final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			private boolean done;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				if (done) {
+					return false;
+				}
+				try {
+					if (!rs.next()) {
+						done = true;
+						close.run();
+						return false;
+					}
+					pr.process(rs.getBytes(1));
+					action.accept(converter.from(pr));
+					return true;
+				} catch (SQLException | IOException e) {
+					done = true;
+					close.run();
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(close);
+	}
+
+	private List<T> toList(Connection connection) throws SQLException {
+		return executeList(connection, query.getQueryString(), query.getQueryParameters(), converter(), lambdas);
+	}
+
+	private List<T> toListInSnapshot(String snapshot) throws SQLException {
+		final Connection connection = getConnection.get();
+		try {
+			PostgresSnapshot.begin(connection, snapshot);
+			try {
+				return toList(connection);
+			} finally {
+				PostgresSnapshot.end(connection);
+			}
+		} finally {
+			releaseConnection.release(connection);
+		}
+	}
+
+	/**
+	 * Execute query as several hash partitioned queries on separate connections.
+	 * Partitions share a single exported snapshot, so they see the same data.
+	 * Partitions are read and decoded concurrently and merged according to the provided order.
+	 * Order must be collation independent, since text is compared in Java while merging.
+	 * When query can't be partitioned (limit, skip, aggregation, transaction bound connection)
+	 * it is executed as a single query.
+	 *
+	 * @param degree   number of partitions
+	 * @param executor executor for partitions except the first one which runs on the calling thread
+	 * @param order    order of sorted query or null when query is not sorted
+	 * @return merged result
+	 */
+	public List<T> toList(int degree, Executor executor, Comparator<? super T> order) throws SQLException {
+		if (degree < 2 || connection != null) {
+			return toList();
+		}
+		final List<RevenjQueryComposer<T>> partitions = new ArrayList<>(degree);
+		for (int i = 0; i < degree; i++) {
+			RevenjQueryComposer<T> partition;
+			try {
+				partition = applyTransformWithLambda(manifest, new PartitionTransform(getConfig(), degree, i));
+			} catch (RuntimeException ignore) {
+				partition = null;
+			}
+			if (partition == null) {
+				return toList();
+			}
+			partitions.add(partition);
+		}
+		final List<List<T>> results = new ArrayList<>(degree);
+		// all partitions read the snapshot exported by the first one, so concurrent changes can't move rows between partitions
+		final Connection coordinator = getConnection.get();
+		try {
+			final String snapshot = PostgresSnapshot.begin(coordinator, null);
+			try {
+				final List<CompletableFuture<List<T>>> futures = new ArrayList<>(degree - 1);
+				for (int i = 1; i < degree; i++) {
+					final RevenjQueryComposer<T> partition = partitions.get(i);
+					Supplier<List<T>> read = () -> {
+						try {
+							return partition.toListInSnapshot(snapshot);
+						} catch (SQLException e) {
+							throw new CompletionException(e);
+						}
+					};
+					futures.add(executor != null ? CompletableFuture.supplyAsync(read, executor) : CompletableFuture.supplyAsync(read));
+				}
+				results.add(partitions.get(0).toList(coordinator));
+				for (CompletableFuture<List<T>> future : futures) {
+					try {
+						results.add(future.join());
+					} catch (CompletionException e) {
+						if (e.getCause() instanceof SQLException) {
+							throw (SQLException) e.getCause();
+						}
+						throw new SQLException(e.getCause());
+					}
+				}
+			} finally {
+				PostgresSnapshot.end(coordinator);
+			}
+		} finally {
+			releaseConnection.release(coordinator);
+		}
+		int total = 0;
+		for (List<T> list : results) {
+			total += list.size();
+		}
+		final ArrayList<T> result = new ArrayList<>(total);
+		if (order == null) {
+			for (List<T> list : results) {
+				result.addAll(list);
+			}
+			return result;
+		}
+		final int[] positions = new int[results.size()];
+		final PriorityQueue<Integer> heads = new PriorityQueue<>(results.size(),
+				(a, b) -> order.compare(results.get(a).get(positions[a]), results.get(b).get(positions[b])));
+		for (int i = 0; i < results.size(); i++) {
+			if (!results.get(i).isEmpty()) {
+				heads.add(i);
+			}
+		}
+		while (!heads.isEmpty()) {
+			int index = heads.poll();
+			List<T> list = results.get(index);
+			result.add(list.get(positions[index]++));
+			if (positions[index] < list.size()) {
+				heads.add(index);
+			}
+		}
+		return result;
+	}
+
+	@FunctionalInterface
+	private interface ColumnDecoder {
+		Object decode(ResultSet rs, int index, PostgresReader reader) throws SQLException, IOException;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private ColumnDecoder decoderFor(String javaType) throws SQLException {
+		switch (javaType) {
+			case "java.lang.String":
+				return (rs, i, pr) -> rs.getString(i);
+			case "int":
+			case "java.lang.Integer":
+				return (rs, i, pr) -> {
+					int value = rs.getInt(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "long":
+			case "java.lang.Long":
+				return (rs, i, pr) -> {
+					long value = rs.getLong(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "short":
+			case "java.lang.Short":
+				return (rs, i, pr) -> {
+					short value = rs.getShort(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "double":
+			case "java.lang.Double":
+				return (rs, i, pr) -> {
+					double value = rs.getDouble(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "float":
+			case "java.lang.Float":
+				return (rs, i, pr) -> {
+					float value = rs.getFloat(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "boolean":
+			case "java.lang.Boolean":
+				return (rs, i, pr) -> {
+					boolean value = rs.getBoolean(i);
+					return rs.wasNull() ? null : value;
+				};
+			case "java.math.BigDecimal":
+				return (rs, i, pr) -> rs.getBigDecimal(i);
+			case "java.time.LocalDate":
+				return (rs, i, pr) -> rs.getObject(i, LocalDate.class);
+			case "java.time.LocalDateTime":
+				return (rs, i, pr) -> rs.getObject(i, LocalDateTime.class);
+			case "java.time.OffsetDateTime":
+				return (rs, i, pr) -> rs.getObject(i, OffsetDateTime.class);
+			case "java.util.UUID":
+				return (rs, i, pr) -> rs.getObject(i, UUID.class);
+			case "byte[]":
+				return (rs, i, pr) -> rs.getBytes(i);
+		}
+		final Class<?> manifest;
+		try {
+			manifest = Class.forName(javaType, false, loader != null ? loader : RevenjQueryComposer.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Unable to find projection type: " + javaType, e);
+		}
+		if (manifest.isEnum()) {
+			return (rs, i, pr) -> {
+				String value = rs.getString(i);
+				return value == null ? null : Enum.valueOf((Class) manifest, value);
+			};
+		}
+		final Optional<ObjectConverter> converter = getConverterFor(locator, manifest);
+		if (converter.isPresent()) {
+			final ObjectConverter oc = converter.get();
+			return (rs, i, pr) -> {
+				byte[] value = rs.getBytes(i);
+				if (value == null) return null;
+				pr.process(value);
+				return oc.from(pr);
+			};
+		}
+		return (rs, i, pr) -> rs.getObject(i);
+	}
+
+	/**
+	 * Execute query created with select.
+	 * Only projected columns are fetched and decoded.
+	 */
+	public List<T> project() throws SQLException {
+		final String queryString = query.getQueryString();
+		final RowReader<T> reader = query.getRowReader();
+		final String[] types = ((ProjectionRowReader<T>) reader).getColumnTypes();
+		final ColumnDecoder[] decoders = new ColumnDecoder[types.length];
+		for (int i = 0; i < types.length; i++) {
+			decoders[i] = decoderFor(types[i]);
+		}
+		Connection connection = getConnection();
+		final ArrayList<T> result = new ArrayList<>();
+		try {
+			final long start = System.nanoTime();
+			final PreparedStatement ps = connection.prepareStatement(queryString);
+			try {
+				fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+				final Object[] row = new Object[decoders.length];
+				final long executed;
+				try (final ResultSet rs = ps.executeQuery();
+					 PostgresReader pr = new PostgresReader(locator)) {
+					executed = System.nanoTime();
 					while (rs.next()) {
-						pr.process(rs.getString(1));
-						result.add(converter.from(pr));
+						for (int i = 0; i < decoders.length; i++) {
+							row[i] = decoders[i].decode(rs, i + 1, pr);
+						}
+						result.add(reader.readResult(row, 0));
 					}
 				}
+				if (instrumentation != null) {
+					instrument(connection, "select", queryString, query.getQueryParameters(), lambdas, start, executed, result.size());
+				}
 			} catch (IOException e) {
 				throw new SQLException(e);
 			} finally {
-				releaseConnection(connection);
+				ps.close();
 			}
-			return result;
+		} finally {
+			releaseConnection(connection);
+		}
+		return result;
+	}
+
+	private void closeStream(Connection connection, boolean restoreAutoCommit, PreparedStatement ps, ResultSet rs) throws SQLException {
+		if (ps != null && ps.isClosed()) {
+			return;
+		}
+		try {
+			if (rs != null) rs.close();
+			if (ps != null) ps.close();
+			if (restoreAutoCommit) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
@@ -455,6 +978,14 @@ public final class RevenjQueryComposer<T> {
 			Class<U> newManifest,
 			RevenjOneLambdaQueryTransform transform,
 			LambdaInfo lambdaInfo) {
+		return applyTransformWithLambda(newManifest, transform, lambdaInfo, true);
+	}
+
+	private <U> RevenjQueryComposer<U> applyTransformWithLambda(
+			Class<U> newManifest,
+			RevenjOneLambdaQueryTransform transform,
+			LambdaInfo lambdaInfo,
+			boolean throwExceptionOnFailure) {
 		if (lambdaInfo == null) {
 			return null;
 		}
@@ -466,14 +997,16 @@ public final class RevenjQueryComposer<T> {
 		if (cachedQuery == null) {
 			JinqPostgresQuery<U> newQuery = null;
 			try {
-				LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, loader, true, true, true, true);
+				LambdaAnalysis lambdaAnalysis = lambdaInfo.fullyAnalyze(metamodel, loader, true, true, true, throwExceptionOnFailure);
 				if (lambdaAnalysis == null) {
 					return null;
 				}
 				getConfig().checkLambdaSideEffects(lambdaAnalysis);
 				newQuery = transform.apply(query, lambdaAnalysis, null);
 			} catch (QueryTransformException e) {
-				throw new RuntimeException(e);
+				if (throwExceptionOnFailure) {
+					throw new RuntimeException(e);
+				}
 			} finally {
 				// Always cache the resulting query, even if it is an error
 				cachedQuery = Optional.ofNullable(newQuery);
@@ -555,10 +1088,93 @@ public final class RevenjQueryComposer<T> {
 		return applyTransformWithLambda(manifest, new WhereTransform(getConfig(), false), lambdaInfo);
 	}
 
+	public RevenjQueryComposer<T> where(LambdaInfo lambdaInfo, Class<?> specification) {
+		RevenjQueryComposer<T> composer = where(lambdaInfo);
+		if (composer != null) {
+			composer.specifications.add(specification);
+		}
+		return composer;
+	}
+
 	public <V extends Comparable<V>> RevenjQueryComposer<T> sortedBy(LambdaInfo lambdaInfo, boolean isAscending) {
 		return applyTransformWithLambda(manifest, new SortingTransform(getConfig(), isAscending), lambdaInfo);
 	}
 
+	// returns null when projection can't be analyzed or translated to SQL
+	public <U> RevenjQueryComposer<U> select(LambdaInfo lambdaInfo) {
+		return applyTransformWithLambda(null, new ProjectionTransform(getConfig()), lambdaInfo, false);
+	}
+
+	public RevenjQueryComposer<T> after(Object[] keys) {
+		String[] types = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			types[i] = keys[i] != null ? keys[i].getClass().getName() : null;
+		}
+		BoundLambdaInfo keyInfo = new BoundLambdaInfo(lambdas.size(), keys, KeysetTransform.class.getName());
+		RevenjQueryComposer<T> composer = applyTransformWithLambda(manifest, new KeysetTransform(getConfig(), lambdas.size(), types));
+		if (composer == null) {
+			return null;
+		}
+		return new RevenjQueryComposer<>(composer, manifest, composer.query, lambdas, keyInfo);
+	}
+
+	/**
+	 * Prepares query for repeated execution.
+	 * SQL, parameter bindings and converter are resolved once, so execution only binds arguments and reads rows.
+	 * Arguments replace values captured by query lambdas, in the order in which lambdas were applied.
+	 * Arguments must not change the shape of the query, since SQL is generated only from the original lambdas.
+	 * Compiled query is bound to the scope it was created in.
+	 * When that scope provided a connection, it can't be used after the connection is released
+	 * and should not be cached beyond that scope. Queries created without a connection
+	 * take one from the pool on each execution.
+	 *
+	 * @return compiled query or null when query parameters can't be bound from arguments
+	 */
+	public Query.Compiled<T> compile() {
+		final String queryString = query.getQueryString();
+		final List<GeneratedQueryParameter> parameters = query.getQueryParameters();
+		for (GeneratedQueryParameter param : parameters) {
+			if (param.fieldName != null) {
+				return null;
+			}
+		}
+		final ObjectConverter<T> converter = converter();
+		final int[] argumentCounts = new int[lambdas.size()];
+		final String[] sources = new String[lambdas.size()];
+		int total = 0;
+		for (int i = 0; i < argumentCounts.length; i++) {
+			LambdaInfo li = lambdas.get(i);
+			argumentCounts[i] = li.getNumCapturedArgs();
+			sources[i] = li.getLambdaSourceString();
+			total += argumentCounts[i];
+		}
+		final int expectedArguments = total;
+		return arguments -> {
+			final Object[] args = arguments == null ? new Object[0] : arguments;
+			if (args.length != expectedArguments) {
+				throw new IllegalArgumentException("Compiled query expects " + expectedArguments + " arguments. Provided: " + args.length);
+			}
+			try {
+				if (connection != null && connection.isClosed()) {
+					throw new IOException("Compiled query was created in a scope whose connection has been released. Compile the query again in the current scope");
+				}
+			} catch (SQLException e) {
+				throw new IOException(e);
+			}
+			final List<LambdaInfo> bound = new ArrayList<>(argumentCounts.length);
+			int offset = 0;
+			for (int i = 0; i < argumentCounts.length; i++) {
+				bound.add(new BoundLambdaInfo(i, Arrays.copyOfRange(args, offset, offset + argumentCounts[i]), sources[i]));
+				offset += argumentCounts[i];
+			}
+			try {
+				return executeList(queryString, parameters, converter, bound);
+			} catch (SQLException e) {
+				throw new IOException(e);
+			}
+		};
+	}
+
 	public RevenjQueryComposer<T> limit(long n) {
 		return applyTransformWithLambda(manifest, new LimitSkipTransform(getConfig(), true, n));
 	}
@@ -2,15 +2,35 @@ package org.revenj.database.postgres.jinq;
 
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Cache of transformed queries shared by all requests.
+ * Lookups don't take locks. Transforms are bounded by size
+ * and least recently used entries are evicted when the bound is exceeded.
+ */
 public final class RevenjQueryComposerCache {
-    private static class CacheKey {
-        @Override
-        public int hashCode() {
+    public static final int DEFAULT_SIZE = 10000;
+
+    private static final long ACCESS_RESOLUTION = 1000000;
+
+    private static final class CacheKey {
+        private final String transformationType;
+        private final JinqPostgresQuery<?> baseQuery;
+        private final String[] lambdaSources;
+        private final int hash;
+
+        CacheKey(String transformationType, JinqPostgresQuery<?> baseQuery, String[] lambdaSources) {
+            this.transformationType = transformationType;
+            this.baseQuery = baseQuery;
+            this.lambdaSources = lambdaSources;
             final int prime = 31;
             int result = 1;
             result = prime * result
@@ -20,7 +40,12 @@ public final class RevenjQueryComposerCache {
                     * result
                     + ((transformationType == null) ? 0 : transformationType
                     .hashCode());
-            return result;
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
         @Override
@@ -32,6 +57,8 @@ public final class RevenjQueryComposerCache {
             if (getClass() != obj.getClass())
                 return false;
             CacheKey other = (CacheKey) obj;
+            if (hash != other.hash)
+                return false;
             if (baseQuery == null) {
                 if (other.baseQuery != null)
                     return false;
@@ -46,23 +73,66 @@ public final class RevenjQueryComposerCache {
                 return false;
             return true;
         }
+    }
+
+    private static final class CacheEntry {
+        final Optional<JinqPostgresQuery<?>> query;
+        long lastAccess;
 
-        String transformationType;
-        JinqPostgresQuery<?> baseQuery;
-        String[] lambdaSources;
+        CacheEntry(Optional<JinqPostgresQuery<?>> query, long lastAccess) {
+            this.query = query;
+            this.lastAccess = lastAccess;
+        }
     }
 
+    private final int maxSize;
+
     /**
      * Map of cached query transforms. Maps from a description of the transform
      * to the cached result of the transform.
      */
-    private final Map<CacheKey, Optional<JinqPostgresQuery<?>>> cachedQueryTransforms = new HashMap<>();
+    private final ConcurrentHashMap<CacheKey, CacheEntry> cachedQueryTransforms = new ConcurrentHashMap<>();
 
     /**
      * Map of cached queries for finding all the entities of a certain type. The
      * map maps from entity name to the corresponding query.
      */
-    private final Map<String, Optional<JinqPostgresQuery<?>>> cachedFindAllEntities = new HashMap<>();
+    private final ConcurrentHashMap<String, Optional<JinqPostgresQuery<?>>> cachedFindAllEntities = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RevenjQueryComposerCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of cached transforms
+     */
+    public RevenjQueryComposerCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return cachedQueryTransforms.size();
+    }
 
     /**
      * Looks up whether a certain transformation is already in the cache or not.
@@ -73,11 +143,21 @@ public final class RevenjQueryComposerCache {
      * @return cached transformation result or null if this transformation hasn't
      * been cached
      */
-    public synchronized Optional<JinqPostgresQuery<?>> findInCache(
+    public Optional<JinqPostgresQuery<?>> findInCache(
             JinqPostgresQuery<?> base,
             String transformationType,
             String[] lambdaSources) {
-        return cacheQuery(base, transformationType, lambdaSources, null);
+        CacheEntry entry = cachedQueryTransforms.get(new CacheKey(transformationType, base, lambdaSources));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        long now = System.nanoTime();
+        if (now - entry.lastAccess > ACCESS_RESOLUTION) {
+            entry.lastAccess = now;
+        }
+        return entry.query;
     }
 
     /**
@@ -90,23 +170,52 @@ public final class RevenjQueryComposerCache {
      * @param resultingQuery     result of the transformation that should be cached
      * @return the existing cached entry or resultingQuery if nothing is cached
      */
-    public synchronized Optional<JinqPostgresQuery<?>> cacheQuery(
+    public Optional<JinqPostgresQuery<?>> cacheQuery(
             JinqPostgresQuery<?> base,
             String transformationType,
             String[] lambdaSources,
             Optional<JinqPostgresQuery<?>> resultingQuery) {
-        CacheKey key = new CacheKey();
-        key.transformationType = transformationType;
-        key.baseQuery = base;
-        if (lambdaSources != null)
-            key.lambdaSources = Arrays.copyOf(lambdaSources, lambdaSources.length);
-        if (cachedQueryTransforms.containsKey(key))
-            return cachedQueryTransforms.get(key);
-        if (resultingQuery != null)
-            cachedQueryTransforms.put(key, resultingQuery);
+        if (resultingQuery == null) {
+            return findInCache(base, transformationType, lambdaSources);
+        }
+        CacheKey key = new CacheKey(
+                transformationType,
+                base,
+                lambdaSources != null ? Arrays.copyOf(lambdaSources, lambdaSources.length) : null);
+        CacheEntry previous = cachedQueryTransforms.putIfAbsent(key, new CacheEntry(resultingQuery, System.nanoTime()));
+        if (previous != null) {
+            return previous.query;
+        }
+        if (cachedQueryTransforms.size() > maxSize) {
+            evict();
+        }
         return resultingQuery;
     }
 
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int size = cachedQueryTransforms.size();
+            if (size <= maxSize) {
+                return;
+            }
+            List<Map.Entry<CacheKey, CacheEntry>> entries = new ArrayList<>(cachedQueryTransforms.entrySet());
+            entries.sort((l, r) -> Long.compare(l.getValue().lastAccess, r.getValue().lastAccess));
+            //evict a bit more than required so sorting is not done on every insert
+            int toEvict = Math.min(entries.size(), size - maxSize + maxSize / 10);
+            for (int i = 0; i < toEvict; i++) {
+                Map.Entry<CacheKey, CacheEntry> kv = entries.get(i);
+                if (cachedQueryTransforms.remove(kv.getKey(), kv.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
     /**
      * Checks if a query for finding all the entities of a certain type has
      * already been cached
@@ -114,8 +223,8 @@ public final class RevenjQueryComposerCache {
      * @param dataSource name of the type of entity the query should return
      * @return the cached query or null if no query has been cached.
      */
-    public synchronized Optional<JinqPostgresQuery<?>> findCachedFindAll(String dataSource) {
-        return cacheFindAll(dataSource, null);
+    public Optional<JinqPostgresQuery<?>> findCachedFindAll(String dataSource) {
+        return cachedFindAllEntities.get(dataSource);
     }
 
     /**
@@ -129,13 +238,13 @@ public final class RevenjQueryComposerCache {
      * @return if a query has already been cached, that query is returned;
      * otherwise, queryToCache is inserted into the cache and returned.
      */
-    public synchronized Optional<JinqPostgresQuery<?>> cacheFindAll(
+    public Optional<JinqPostgresQuery<?>> cacheFindAll(
             String dataSource,
             Optional<JinqPostgresQuery<?>> queryToCache) {
-        if (cachedFindAllEntities.containsKey(dataSource))
+        if (queryToCache == null) {
             return cachedFindAllEntities.get(dataSource);
-        if (queryToCache != null)
-            cachedFindAllEntities.put(dataSource, queryToCache);
-        return queryToCache;
+        }
+        Optional<JinqPostgresQuery<?>> previous = cachedFindAllEntities.putIfAbsent(dataSource, queryToCache);
+        return previous != null ? previous : queryToCache;
     }
 }
@@ -3,8 +3,10 @@ package org.revenj.database.postgres.jinq;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.revenj.patterns.Query;
+import org.revenj.database.postgres.QueryInstrumentation;
 import org.revenj.database.postgres.QueryProvider;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
 
@@ -16,12 +18,33 @@ final class RevenjQueryProvider implements QueryProvider {
 	private final MetamodelUtil metamodel;
 	private final ClassLoader loader;
 	private final javax.sql.DataSource dataSource;
-	private final RevenjQueryComposerCache cachedQueries = new RevenjQueryComposerCache();
+	private final int fetchSize;
+	private final QueryInstrumentation instrumentation;
+	private final RevenjQueryComposerCache cachedQueries;
+	private final Executor asyncExecutor;
+	private final int maxParallelism;
 
 	public RevenjQueryProvider(MetamodelUtil metamodel, ClassLoader loader, javax.sql.DataSource dataSource) {
+		this(metamodel, loader, dataSource, RevenjQueryComposer.DEFAULT_FETCH_SIZE, null, new RevenjQueryComposerCache(), null, Runtime.getRuntime().availableProcessors());
+	}
+
+	public RevenjQueryProvider(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			javax.sql.DataSource dataSource,
+			int fetchSize,
+			QueryInstrumentation instrumentation,
+			RevenjQueryComposerCache cachedQueries,
+			Executor asyncExecutor,
+			int maxParallelism) {
 		this.metamodel = metamodel;
 		this.loader = loader;
 		this.dataSource = dataSource;
+		this.fetchSize = fetchSize;
+		this.instrumentation = instrumentation;
+		this.cachedQueries = cachedQueries;
+		this.asyncExecutor = asyncExecutor;
+		this.maxParallelism = maxParallelism;
 	}
 
 	public <T extends DataSource> Query<T> query(Connection connection, ServiceLocator locator, Class<T> manifest) {
@@ -33,7 +56,11 @@ final class RevenjQueryProvider implements QueryProvider {
 				connection,
 				locator,
 				this::getFromDataSource,
-				Connection::close);
+				Connection::close,
+				fetchSize,
+				instrumentation,
+				asyncExecutor,
+				maxParallelism);
 	}
 
 	private Connection getFromDataSource() throws SQLException {
@@ -0,0 +1,34 @@
+package org.revenj.database.postgres.jinq.jpqlquery;
+
+/**
+ * Row reader for projections which also remembers Java types of the selected columns,
+ * so they can be decoded without loading the whole object.
+ */
+public final class ProjectionRowReader<T> implements RowReader<T> {
+	private final RowReader<T> reader;
+	private final String[] columnTypes;
+
+	public ProjectionRowReader(RowReader<T> reader, String[] columnTypes) {
+		this.reader = reader;
+		this.columnTypes = columnTypes;
+	}
+
+	public String[] getColumnTypes() {
+		return columnTypes;
+	}
+
+	@Override
+	public T readResult(Object result) {
+		return reader.readResult(result);
+	}
+
+	@Override
+	public T readResult(Object[] results, int offset) {
+		return reader.readResult(results, offset);
+	}
+
+	@Override
+	public int getNumColumns() {
+		return reader.getNumColumns();
+	}
+}
@@ -0,0 +1,32 @@
+package org.revenj.database.postgres.jinq.transform;
+
+/**
+ * Lambda information with explicitly provided captured arguments.
+ * Used when query parameters are not bound from an actual lambda instance,
+ * such as seek pagination keys or arguments of a compiled query.
+ */
+public final class BoundLambdaInfo extends LambdaInfo {
+	private final Object[] values;
+	private final String source;
+
+	public BoundLambdaInfo(int lambdaIndex, Object[] values, String source) {
+		super(lambdaIndex, values.length, 0);
+		this.values = values;
+		this.source = source;
+	}
+
+	@Override
+	public Object getCapturedArg(int argIndex) {
+		return values[argIndex];
+	}
+
+	@Override
+	public Object getField(String fieldName) {
+		throw new IllegalArgumentException("Cannot read field " + fieldName + " of bound lambda");
+	}
+
+	@Override
+	public String getLambdaSourceString() {
+		return source;
+	}
+}
@@ -0,0 +1,101 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import org.revenj.database.postgres.jinq.jpqlquery.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seek pagination. Continues sorted query after the row with the provided sort keys,
+ * by translating current ORDER BY into a WHERE predicate instead of using OFFSET.
+ * Postgres sorts nulls last in ascending and first in descending order, so keys can be null
+ * (null type) and IS NULL branches keep rows with null sort values.
+ * When all keys are non null and sorted descending, row comparison is used so Postgres can use composite index.
+ */
+public class KeysetTransform extends RevenjNoLambdaQueryTransform {
+	public KeysetTransform(RevenjQueryTransformConfiguration config, int lambdaIndex, String[] types) {
+		super(config);
+		this.lambdaIndex = lambdaIndex;
+		this.types = types;
+	}
+
+	private final int lambdaIndex;
+	private final String[] types;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <U, V> JinqPostgresQuery<U> apply(JinqPostgresQuery<V> query, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException {
+		if (query instanceof SelectFromWhere && query.getClass() == SelectFromWhere.class) {
+			SelectFromWhere<V> sfw = (SelectFromWhere<V>) query;
+			if (sfw.isAggregated || sfw.isDistinct || sfw.skip >= 0 || sfw.limit >= 0) {
+				throw new QueryTransformException("Seek pagination can't be used on aggregated, distinct, skipped or limited query");
+			}
+			if (sfw.sort.size() != types.length) {
+				throw new QueryTransformException("Seek pagination requires a key for each sort expression. Expecting: " + sfw.sort.size() + ". Provided: " + types.length);
+			}
+			if (types.length == 0) {
+				throw new QueryTransformException("Seek pagination requires sorted query");
+			}
+			boolean rowComparison = true;
+			for (int i = 0; i < types.length; i++) {
+				rowComparison = rowComparison && types[i] != null && !sfw.sort.get(i).isAscending;
+			}
+			Expression keyset;
+			if (rowComparison && types.length > 1) {
+				List<Expression> columns = new ArrayList<>(types.length);
+				List<Expression> values = new ArrayList<>(types.length);
+				for (int i = 0; i < types.length; i++) {
+					columns.add(sfw.sort.get(i).expr);
+					values.add(new ParameterExpression(lambdaIndex, i, types[i]));
+				}
+				keyset = new BinaryExpression(
+						FunctionExpression.withParams("ROW", columns),
+						"<",
+						FunctionExpression.withParams("ROW", values));
+			} else {
+				// (a > ? OR a IS NULL) OR (a = ? AND (b < ?)) OR ...
+				keyset = null;
+				for (int i = types.length - 1; i >= 0; i--) {
+					SelectFromWhere.SortingParameters sp = sfw.sort.get(i);
+					Expression after = after(sp, i);
+					if (keyset != null) {
+						Expression equal = types[i] == null
+								? UnaryExpression.postfix("IS NULL", sp.expr)
+								: new BinaryExpression(sp.expr, "=", new ParameterExpression(lambdaIndex, i, types[i]));
+						Expression next = new BinaryExpression(equal, "AND", keyset);
+						keyset = after == null ? next : new BinaryExpression(after, "OR", next);
+					} else {
+						keyset = after != null ? after : new ConstantExpression("FALSE");
+					}
+				}
+			}
+			SelectFromWhere<U> toReturn = (SelectFromWhere<U>) sfw.shallowCopy();
+			if (sfw.where == null) {
+				toReturn.where = keyset;
+			} else {
+				toReturn.where = new BinaryExpression(sfw.where, "AND", keyset);
+			}
+			return toReturn;
+		}
+		throw new QueryTransformException("Existing query cannot be transformed further");
+	}
+
+	// returns null when nothing sorts after the key
+	private Expression after(SelectFromWhere.SortingParameters sp, int index) {
+		if (types[index] == null) {
+			return sp.isAscending ? null : UnaryExpression.postfix("IS NOT NULL", sp.expr);
+		}
+		Expression compare = new BinaryExpression(sp.expr, sp.isAscending ? ">" : "<", new ParameterExpression(lambdaIndex, index, types[index]));
+		return sp.isAscending ? new BinaryExpression(compare, "OR", UnaryExpression.postfix("IS NULL", sp.expr)) : compare;
+	}
+
+	@Override
+	public String getTransformationTypeCachingTag() {
+		StringBuilder tag = new StringBuilder(KeysetTransform.class.getName()).append(':');
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) tag.append(',');
+			tag.append(types[i] == null ? "null" : types[i]);
+		}
+		return tag.toString();
+	}
+}
@@ -299,6 +299,14 @@ public class LambdaAnalysis {
 	}
 
 	private static MethodAnalysisResults analyzeLambda(MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe, String className, String methodName, String methodSignature) throws IOException, AnalyzerException {
+		LambdaAnalysisCache cache = metamodel.getAnalysisCache();
+		if (cache != null) {
+			return cache.analyze(metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, className, methodName, methodSignature);
+		}
+		return analyzeLambdaMethod(metamodel, alternateClassLoader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, className, methodName, methodSignature);
+	}
+
+	static MethodAnalysisResults analyzeLambdaMethod(MetamodelUtil metamodel, ClassLoader alternateClassLoader, boolean isObjectEqualsSafe, boolean isAllEqualsSafe, boolean isCollectionContainsSafe, String className, String methodName, String methodSignature) throws IOException, AnalyzerException {
 		// Open up the corresponding class to analyze
 		PathAnalysisFactory pathAnalysisFactory = new PathAnalysisFactory(
 				metamodel.getMethodChecker(isObjectEqualsSafe, isCollectionContainsSafe));
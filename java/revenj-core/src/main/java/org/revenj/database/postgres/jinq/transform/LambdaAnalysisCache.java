@@ -0,0 +1,767 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import ch.epfl.labos.iu.orm.queryll2.path.MethodAnalysisResults;
+import ch.epfl.labos.iu.orm.queryll2.path.MethodSideEffect;
+import ch.epfl.labos.iu.orm.queryll2.path.MethodSideEffectCall;
+import ch.epfl.labos.iu.orm.queryll2.path.MethodSideEffectFieldAssign;
+import ch.epfl.labos.iu.orm.queryll2.path.PathAnalysis;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.BasicSymbolicInterpreter.OperationSideEffect;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.ConstantValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.LambdaFactory;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodCallValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+import org.jinq.rebased.org.objectweb.asm.ClassReader;
+import org.jinq.rebased.org.objectweb.asm.Handle;
+import org.jinq.rebased.org.objectweb.asm.Opcodes;
+import org.jinq.rebased.org.objectweb.asm.Type;
+import org.jinq.rebased.org.objectweb.asm.tree.ClassNode;
+import org.jinq.rebased.org.objectweb.asm.tree.MethodNode;
+import org.jinq.rebased.org.objectweb.asm.tree.analysis.AnalyzerException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of lambda analysis results.
+ * Symbolic execution of lambda bytecode is the most expensive part of the first query execution,
+ * so results are stored in a file and reused across restarts.
+ * Each entry is validated against a hash of the lambda class bytecode and a fingerprint
+ * of the metamodel (safe methods, safe annotations and comparison methods), so changed classes
+ * or a changed model will be analyzed again.
+ * Method calls in a cached result are checked again on load, so a method which is no longer
+ * annotated as safe will cause the lambda to be analyzed again.
+ * Results which contain values unknown to the codec are not cached.
+ */
+public final class LambdaAnalysisCache implements AutoCloseable {
+
+	private static final int MAGIC = 0x524c4143;
+	private static final int VERSION = 1;
+
+	private static final class Entry {
+		final long classHash;
+		final long modelHash;
+		final byte[] analysis;
+
+		Entry(long classHash, long modelHash, byte[] analysis) {
+			this.classHash = classHash;
+			this.modelHash = modelHash;
+			this.analysis = analysis;
+		}
+	}
+
+	private static final class NotCacheableException extends IOException {
+		NotCacheableException(Object value) {
+			super("Unable to cache " + value.getClass());
+		}
+	}
+
+	private final File file;
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Long> classHashes = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile boolean changed;
+
+	/**
+	 * Create cache backed by the specified file.
+	 * Existing entries will be loaded if the file exists.
+	 * Invalid or outdated file will be ignored and overwritten on save.
+	 *
+	 * @param file cache location
+	 */
+	public LambdaAnalysisCache(File file) {
+		this.file = file;
+		if (file != null && file.isFile()) {
+			try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				load(is);
+			} catch (IOException ignore) {
+				entries.clear();
+			}
+		}
+	}
+
+	private void load(DataInputStream is) throws IOException {
+		if (is.readInt() != MAGIC || is.readInt() != VERSION) {
+			return;
+		}
+		int count = is.readInt();
+		for (int i = 0; i < count; i++) {
+			String key = is.readUTF();
+			long classHash = is.readLong();
+			long modelHash = is.readLong();
+			byte[] analysis = new byte[is.readInt()];
+			is.readFully(analysis);
+			entries.put(key, new Entry(classHash, modelHash, analysis));
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Write the cache to the file if there were new entries.
+	 * File is replaced atomically, so concurrent readers will see either the old or the new version.
+	 *
+	 * @throws IOException unable to write the file
+	 */
+	public synchronized void save() throws IOException {
+		if (file == null || !changed) {
+			return;
+		}
+		changed = false;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Unable to create " + parent);
+		}
+		File tmp = new File(parent, file.getName() + ".tmp");
+		List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+			os.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> kv : snapshot) {
+				Entry entry = kv.getValue();
+				os.writeUTF(kv.getKey());
+				os.writeLong(entry.classHash);
+				os.writeLong(entry.modelHash);
+				os.writeInt(entry.analysis.length);
+				os.write(entry.analysis);
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public void close() throws IOException {
+		save();
+	}
+
+	/**
+	 * Analyze all lambda methods of the specified class in advance.
+	 * Can be used during build or deployment to populate the cache before the first query.
+	 * Lambdas which can't be analyzed are skipped.
+	 *
+	 * @param metamodel configured metamodel
+	 * @param loader    class loader used for loading lambda classes
+	 * @param className internal class name, eg. com/example/Service
+	 * @return number of analyzed lambdas
+	 * @throws IOException unable to load class bytecode
+	 */
+	public int preanalyze(MetamodelUtil metamodel, ClassLoader loader, String className) throws IOException {
+		byte[] bytecode = bytecode(loader, className);
+		if (bytecode == null) {
+			throw new IOException("Unable to find bytecode for " + className);
+		}
+		ClassNode node = new ClassNode();
+		new ClassReader(bytecode).accept(node, ClassReader.SKIP_CODE);
+		int count = 0;
+		for (Object m : node.methods) {
+			MethodNode method = (MethodNode) m;
+			if ((method.access & Opcodes.ACC_SYNTHETIC) == 0 || !method.name.startsWith("lambda$")) {
+				continue;
+			}
+			try {
+				if (analyze(metamodel, loader, true, true, true, className, method.name, method.desc) != null) {
+					count++;
+				}
+			} catch (AnalyzerException | RuntimeException ignore) {
+			}
+		}
+		return count;
+	}
+
+	MethodAnalysisResults analyze(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			boolean isObjectEqualsSafe,
+			boolean isAllEqualsSafe,
+			boolean isCollectionContainsSafe,
+			String className,
+			String methodName,
+			String methodSignature) throws IOException, AnalyzerException {
+		Long classHash = classHash(loader, className);
+		if (classHash == null) {
+			return LambdaAnalysis.analyzeLambdaMethod(metamodel, loader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, className, methodName, methodSignature);
+		}
+		long modelHash = modelHash(metamodel);
+		String key = className + "." + methodName + methodSignature
+				+ (isObjectEqualsSafe ? ":T" : ":F")
+				+ (isAllEqualsSafe ? "T" : "F")
+				+ (isCollectionContainsSafe ? "T" : "F");
+		Entry entry = entries.get(key);
+		if (entry != null && entry.classHash == classHash && entry.modelHash == modelHash) {
+			try {
+				MethodAnalysisResults cached = decode(entry.analysis, metamodel.getMethodChecker(isObjectEqualsSafe, isCollectionContainsSafe));
+				hits.incrementAndGet();
+				return cached;
+			} catch (IOException ignore) {
+				entries.remove(key, entry);
+			}
+		}
+		misses.incrementAndGet();
+		MethodAnalysisResults analysis = LambdaAnalysis.analyzeLambdaMethod(metamodel, loader, isObjectEqualsSafe, isAllEqualsSafe, isCollectionContainsSafe, className, methodName, methodSignature);
+		if (analysis != null) {
+			try {
+				entries.put(key, new Entry(classHash, modelHash, encode(analysis)));
+				changed = true;
+			} catch (NotCacheableException ignore) {
+			}
+		}
+		return analysis;
+	}
+
+	private static byte[] bytecode(ClassLoader loader, String className) throws IOException {
+		ClassLoader cl = loader != null ? loader : LambdaAnalysisCache.class.getClassLoader();
+		try (InputStream is = cl.getResourceAsStream(className.replace('.', '/') + ".class")) {
+			if (is == null) {
+				return null;
+			}
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				os.write(buffer, 0, read);
+			}
+			return os.toByteArray();
+		}
+	}
+
+	private Long classHash(ClassLoader loader, String className) throws IOException {
+		Long hash = classHashes.get(className);
+		if (hash == null) {
+			byte[] bytecode = bytecode(loader, className);
+			if (bytecode == null) {
+				return null;
+			}
+			MessageDigest digest = sha1();
+			hash = toLong(digest.digest(bytecode));
+			classHashes.put(className, hash);
+		}
+		return hash;
+	}
+
+	// model can change without changing its size, so the whole model is hashed every time
+	private static long modelHash(MetamodelUtil metamodel) {
+		List<String> signatures = new ArrayList<>();
+		for (MethodSignature sig : metamodel.getSafeMethods()) {
+			signatures.add("M" + sig);
+		}
+		for (MethodSignature sig : metamodel.getSafeStaticMethods()) {
+			signatures.add("S" + sig);
+		}
+		for (Class<?> annotation : metamodel.getSafeMethodAnnotations()) {
+			signatures.add("A" + annotation.getName());
+		}
+		addComparisons(signatures, "C", metamodel.getComparisonMethods(false));
+		addComparisons(signatures, "E", metamodel.getComparisonMethods(true));
+		addComparisons(signatures, "c", metamodel.getStaticComparisonMethods(false));
+		addComparisons(signatures, "e", metamodel.getStaticComparisonMethods(true));
+		for (MethodSignature sig : MethodChecker.jpqlFunctionMethods.keySet()) {
+			signatures.add("V" + sig);
+		}
+		for (MethodSignature sig : MethodChecker.jpqlFunctionStaticMethods.keySet()) {
+			signatures.add("F" + sig);
+		}
+		Collections.sort(signatures);
+		MessageDigest digest = sha1();
+		for (String sig : signatures) {
+			try {
+				digest.update(sig.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+			digest.update((byte) '\n');
+		}
+		return toLong(digest.digest());
+	}
+
+	private static void addComparisons(List<String> signatures, String prefix, Map<MethodSignature, TypedValue.ComparisonValue.ComparisonOp> methods) {
+		for (Map.Entry<MethodSignature, TypedValue.ComparisonValue.ComparisonOp> kv : methods.entrySet()) {
+			signatures.add(prefix + kv.getKey() + "=" + kv.getValue());
+		}
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static long toLong(byte[] hash) {
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (hash[i] & 0xff);
+		}
+		return result;
+	}
+
+	private static final byte NULL = 0;
+	private static final byte REFERENCE = 1;
+	private static final byte TYPED = 2;
+	private static final byte ARG = 3;
+	private static final byte THIS = 4;
+	private static final byte NEW = 5;
+	private static final byte CONST_NULL = 6;
+	private static final byte CONST_BOOLEAN = 7;
+	private static final byte CONST_BYTE = 8;
+	private static final byte CONST_SHORT = 9;
+	private static final byte CONST_INT = 10;
+	private static final byte CONST_LONG = 11;
+	private static final byte CONST_FLOAT = 12;
+	private static final byte CONST_DOUBLE = 13;
+	private static final byte CONST_STRING = 14;
+	private static final byte CONST_CLASS = 15;
+	private static final byte STATIC_FIELD = 16;
+	private static final byte FIELD = 17;
+	private static final byte CAST = 18;
+	private static final byte NOT = 19;
+	private static final byte UNARY_MATH = 20;
+	private static final byte UNARY = 21;
+	private static final byte MATH = 22;
+	private static final byte COMPARISON = 23;
+	private static final byte BINARY = 24;
+	private static final byte STATIC_CALL = 25;
+	private static final byte VIRTUAL_CALL = 26;
+	private static final byte CALL = 27;
+	private static final byte LAMBDA = 28;
+	private static final byte SIDE_EFFECT_CALL = 29;
+	private static final byte SIDE_EFFECT_ASSIGN = 30;
+
+	static byte[] encode(MethodAnalysisResults analysis) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream os = new DataOutputStream(buffer);
+		Encoder encoder = new Encoder(os);
+		os.writeInt(analysis.paths.size());
+		for (PathAnalysis path : analysis.paths) {
+			List<MethodSideEffect> sideEffects = path.getSideEffects();
+			os.writeInt(sideEffects.size());
+			for (MethodSideEffect sideEffect : sideEffects) {
+				encoder.write(sideEffect);
+			}
+			encoder.write(path.getReturnValue());
+			encoder.write(path.getConditions());
+		}
+		os.flush();
+		return buffer.toByteArray();
+	}
+
+	static MethodAnalysisResults decode(byte[] data, MethodChecker checker) throws IOException {
+		DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+		Decoder decoder = new Decoder(is, checker);
+		MethodAnalysisResults analysis = new MethodAnalysisResults();
+		int paths = is.readInt();
+		for (int i = 0; i < paths; i++) {
+			int count = is.readInt();
+			List<MethodSideEffect> sideEffects = new ArrayList<>(count);
+			for (int j = 0; j < count; j++) {
+				sideEffects.add(decoder.readSideEffect());
+			}
+			TypedValue returnValue = decoder.read();
+			List<TypedValue> conditions = decoder.readList();
+			analysis.addPath(sideEffects, returnValue, conditions);
+		}
+		return analysis;
+	}
+
+	/**
+	 * Values are written in post order and shared instances are written as references,
+	 * so decoded graph has the same shape as the analyzed one.
+	 */
+	private static final class Encoder {
+		private final DataOutputStream os;
+		private final IdentityHashMap<Object, Integer> written = new IdentityHashMap<>();
+
+		Encoder(DataOutputStream os) {
+			this.os = os;
+		}
+
+		private boolean reference(Object value) throws IOException {
+			if (value == null) {
+				os.writeByte(NULL);
+				return true;
+			}
+			Integer index = written.get(value);
+			if (index != null) {
+				os.writeByte(REFERENCE);
+				os.writeInt(index);
+				return true;
+			}
+			return false;
+		}
+
+		private void writeString(String value) throws IOException {
+			os.writeBoolean(value != null);
+			if (value != null) {
+				os.writeUTF(value);
+			}
+		}
+
+		private void writeType(Type type) throws IOException {
+			writeString(type != null ? type.getDescriptor() : null);
+		}
+
+		void write(List<TypedValue> values) throws IOException {
+			os.writeInt(values.size());
+			for (TypedValue value : values) {
+				write(value);
+			}
+		}
+
+		void write(MethodSideEffect value) throws IOException {
+			if (reference(value)) {
+				return;
+			}
+			Class<?> manifest = value.getClass();
+			if (manifest == MethodSideEffectCall.class) {
+				MethodSideEffectCall call = (MethodSideEffectCall) value;
+				os.writeByte(SIDE_EFFECT_CALL);
+				writeString(call.m.owner);
+				writeString(call.m.name);
+				writeString(call.m.desc);
+				write(call.base);
+				write(call.args);
+			} else if (manifest == MethodSideEffectFieldAssign.class) {
+				MethodSideEffectFieldAssign assign = (MethodSideEffectFieldAssign) value;
+				os.writeByte(SIDE_EFFECT_ASSIGN);
+				writeString(assign.owner);
+				writeString(assign.name);
+				writeString(assign.desc);
+				write(assign.base);
+				write(assign.value);
+			} else {
+				throw new NotCacheableException(value);
+			}
+			written.put(value, written.size());
+		}
+
+		void write(TypedValue value) throws IOException {
+			if (reference(value)) {
+				return;
+			}
+			Class<?> manifest = value.getClass();
+			if (manifest == TypedValue.ArgValue.class) {
+				os.writeByte(ARG);
+				writeType(value.getType());
+				os.writeInt(((TypedValue.ArgValue) value).getIndex());
+			} else if (manifest == TypedValue.ThisValue.class) {
+				os.writeByte(THIS);
+				writeType(value.getType());
+			} else if (manifest == TypedValue.NewValue.class) {
+				os.writeByte(NEW);
+				writeString(value.getType().getInternalName());
+			} else if (manifest == ConstantValue.NullConstant.class) {
+				os.writeByte(CONST_NULL);
+			} else if (manifest == ConstantValue.BooleanConstant.class) {
+				os.writeByte(CONST_BOOLEAN);
+				os.writeBoolean(((ConstantValue.BooleanConstant) value).val);
+			} else if (manifest == ConstantValue.ByteConstant.class) {
+				os.writeByte(CONST_BYTE);
+				os.writeByte(((ConstantValue.ByteConstant) value).val);
+			} else if (manifest == ConstantValue.ShortConstant.class) {
+				os.writeByte(CONST_SHORT);
+				os.writeShort(((ConstantValue.ShortConstant) value).val);
+			} else if (manifest == ConstantValue.IntegerConstant.class) {
+				os.writeByte(CONST_INT);
+				os.writeInt(((ConstantValue.IntegerConstant) value).val);
+			} else if (manifest == ConstantValue.LongConstant.class) {
+				os.writeByte(CONST_LONG);
+				os.writeLong(((ConstantValue.LongConstant) value).val);
+			} else if (manifest == ConstantValue.FloatConstant.class) {
+				os.writeByte(CONST_FLOAT);
+				os.writeFloat(((ConstantValue.FloatConstant) value).val);
+			} else if (manifest == ConstantValue.DoubleConstant.class) {
+				os.writeByte(CONST_DOUBLE);
+				os.writeDouble(((ConstantValue.DoubleConstant) value).val);
+			} else if (manifest == ConstantValue.StringConstant.class) {
+				os.writeByte(CONST_STRING);
+				writeString(((ConstantValue.StringConstant) value).val);
+			} else if (manifest == ConstantValue.ClassConstant.class) {
+				os.writeByte(CONST_CLASS);
+				writeType(((ConstantValue.ClassConstant) value).val);
+			} else if (manifest == TypedValue.GetStaticFieldValue.class) {
+				TypedValue.GetStaticFieldValue field = (TypedValue.GetStaticFieldValue) value;
+				os.writeByte(STATIC_FIELD);
+				writeString(field.owner);
+				writeString(field.name);
+				writeString(field.desc);
+			} else if (manifest == TypedValue.GetFieldValue.class) {
+				TypedValue.GetFieldValue field = (TypedValue.GetFieldValue) value;
+				os.writeByte(FIELD);
+				writeString(field.owner);
+				writeString(field.name);
+				writeString(field.desc);
+				write(field.operand);
+			} else if (manifest == TypedValue.CastValue.class) {
+				os.writeByte(CAST);
+				writeType(value.getType());
+				write(((TypedValue.CastValue) value).operand);
+			} else if (manifest == TypedValue.NotValue.class) {
+				os.writeByte(NOT);
+				write(((TypedValue.NotValue) value).operand);
+			} else if (manifest == TypedValue.UnaryMathOpValue.class) {
+				TypedValue.UnaryMathOpValue math = (TypedValue.UnaryMathOpValue) value;
+				os.writeByte(UNARY_MATH);
+				os.writeUTF(math.op.name());
+				writeType(value.getType());
+				write(math.operand);
+			} else if (manifest == TypedValue.UnaryOperationValue.class) {
+				os.writeByte(UNARY);
+				writeType(value.getType());
+				write(((TypedValue.UnaryOperationValue) value).operand);
+			} else if (manifest == TypedValue.MathOpValue.class) {
+				TypedValue.MathOpValue math = (TypedValue.MathOpValue) value;
+				os.writeByte(MATH);
+				os.writeUTF(math.op.name());
+				writeType(value.getType());
+				write(math.left);
+				write(math.right);
+			} else if (manifest == TypedValue.ComparisonValue.class) {
+				TypedValue.ComparisonValue comparison = (TypedValue.ComparisonValue) value;
+				os.writeByte(COMPARISON);
+				os.writeUTF(comparison.compOp.name());
+				write(comparison.left);
+				write(comparison.right);
+			} else if (manifest == TypedValue.BinaryOperationValue.class) {
+				TypedValue.BinaryOperationValue binary = (TypedValue.BinaryOperationValue) value;
+				os.writeByte(BINARY);
+				writeType(value.getType());
+				writeString(binary.operation);
+				write(binary.left);
+				write(binary.right);
+			} else if (manifest == MethodCallValue.StaticMethodCallValue.class) {
+				MethodCallValue call = (MethodCallValue) value;
+				os.writeByte(STATIC_CALL);
+				writeString(call.owner);
+				writeString(call.name);
+				writeString(call.desc);
+				write(call.args);
+			} else if (manifest == MethodCallValue.VirtualMethodCallValue.class) {
+				MethodCallValue.VirtualMethodCallValue call = (MethodCallValue.VirtualMethodCallValue) value;
+				os.writeByte(VIRTUAL_CALL);
+				writeString(call.owner);
+				writeString(call.name);
+				writeString(call.desc);
+				write(call.args);
+				write(call.base);
+			} else if (manifest == MethodCallValue.class) {
+				MethodCallValue call = (MethodCallValue) value;
+				os.writeByte(CALL);
+				writeString(call.owner);
+				writeString(call.name);
+				writeString(call.desc);
+				write(call.args);
+				writeType(value.getType());
+			} else if (manifest == LambdaFactory.class) {
+				LambdaFactory lambda = (LambdaFactory) value;
+				Handle handle = lambda.getLambdaMethod();
+				os.writeByte(LAMBDA);
+				writeType(value.getType());
+				os.writeInt(handle.getTag());
+				writeString(handle.getOwner());
+				writeString(handle.getName());
+				writeString(handle.getDesc());
+				write(lambda.getCapturedArgs());
+			} else if (manifest == TypedValue.class) {
+				os.writeByte(TYPED);
+				writeType(value.getType());
+			} else {
+				throw new NotCacheableException(value);
+			}
+			written.put(value, written.size());
+		}
+	}
+
+	private static final class Decoder {
+		private final DataInputStream is;
+		private final MethodChecker checker;
+		private final ArrayList<Object> values = new ArrayList<>();
+
+		Decoder(DataInputStream is, MethodChecker checker) {
+			this.is = is;
+			this.checker = checker;
+		}
+
+		private static void ensureSafe(OperationSideEffect result, MethodCallValue call) throws IOException {
+			if (result != OperationSideEffect.NONE) {
+				throw new IOException("Method " + call.getSignature() + " is no longer safe");
+			}
+		}
+
+		private String readString() throws IOException {
+			return is.readBoolean() ? is.readUTF() : null;
+		}
+
+		private Type readType() throws IOException {
+			String descriptor = readString();
+			return descriptor != null ? Type.getType(descriptor) : null;
+		}
+
+		private <T> T register(T value) {
+			values.add(value);
+			return value;
+		}
+
+		List<TypedValue> readList() throws IOException {
+			int size = is.readInt();
+			List<TypedValue> result = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				result.add(read());
+			}
+			return result;
+		}
+
+		MethodSideEffect readSideEffect() throws IOException {
+			byte tag = is.readByte();
+			switch (tag) {
+				case NULL:
+					return null;
+				case REFERENCE:
+					return (MethodSideEffect) values.get(is.readInt());
+				case SIDE_EFFECT_CALL: {
+					MethodSignature m = new MethodSignature(readString(), readString(), readString());
+					TypedValue base = read();
+					return register(new MethodSideEffectCall(m, base, readList()));
+				}
+				case SIDE_EFFECT_ASSIGN: {
+					String owner = readString();
+					String name = readString();
+					String desc = readString();
+					TypedValue base = read();
+					return register(new MethodSideEffectFieldAssign(owner, name, desc, base, read()));
+				}
+				default:
+					throw new IOException("Unknown side effect: " + tag);
+			}
+		}
+
+		TypedValue read() throws IOException {
+			byte tag = is.readByte();
+			switch (tag) {
+				case NULL:
+					return null;
+				case REFERENCE:
+					return (TypedValue) values.get(is.readInt());
+				case TYPED:
+					return register(new TypedValue(readType()));
+				case ARG: {
+					Type type = readType();
+					return register(new TypedValue.ArgValue(type, is.readInt()));
+				}
+				case THIS:
+					return register(new TypedValue.ThisValue(readType()));
+				case NEW:
+					return register(new TypedValue.NewValue(readString()));
+				case CONST_NULL:
+					return register(new ConstantValue.NullConstant());
+				case CONST_BOOLEAN:
+					return register(new ConstantValue.BooleanConstant(is.readBoolean()));
+				case CONST_BYTE:
+					return register(new ConstantValue.ByteConstant(is.readByte()));
+				case CONST_SHORT:
+					return register(new ConstantValue.ShortConstant(is.readShort()));
+				case CONST_INT:
+					return register(new ConstantValue.IntegerConstant(is.readInt()));
+				case CONST_LONG:
+					return register(new ConstantValue.LongConstant(is.readLong()));
+				case CONST_FLOAT:
+					return register(new ConstantValue.FloatConstant(is.readFloat()));
+				case CONST_DOUBLE:
+					return register(new ConstantValue.DoubleConstant(is.readDouble()));
+				case CONST_STRING:
+					return register(new ConstantValue.StringConstant(readString()));
+				case CONST_CLASS:
+					return register(new ConstantValue.ClassConstant(readType()));
+				case STATIC_FIELD:
+					return register(new TypedValue.GetStaticFieldValue(readString(), readString(), readString()));
+				case FIELD: {
+					String owner = readString();
+					String name = readString();
+					String desc = readString();
+					return register(new TypedValue.GetFieldValue(owner, name, desc, read()));
+				}
+				case CAST: {
+					Type type = readType();
+					return register(new TypedValue.CastValue(type, read()));
+				}
+				case NOT:
+					return register(new TypedValue.NotValue(read()));
+				case UNARY_MATH: {
+					TypedValue.UnaryMathOpValue.UnaryOp op = TypedValue.UnaryMathOpValue.UnaryOp.valueOf(is.readUTF());
+					Type type = readType();
+					return register(new TypedValue.UnaryMathOpValue(op, type, read()));
+				}
+				case UNARY: {
+					Type type = readType();
+					return register(new TypedValue.UnaryOperationValue(type, read()));
+				}
+				case MATH: {
+					TypedValue.MathOpValue.Op op = TypedValue.MathOpValue.Op.valueOf(is.readUTF());
+					Type type = readType();
+					TypedValue left = read();
+					return register(new TypedValue.MathOpValue(op, type, left, read()));
+				}
+				case COMPARISON: {
+					TypedValue.ComparisonValue.ComparisonOp op = TypedValue.ComparisonValue.ComparisonOp.valueOf(is.readUTF());
+					TypedValue left = read();
+					return register(new TypedValue.ComparisonValue(op, left, read()));
+				}
+				case BINARY: {
+					Type type = readType();
+					String operation = readString();
+					TypedValue left = read();
+					return register(new TypedValue.BinaryOperationValue(type, operation, left, read()));
+				}
+				case STATIC_CALL: {
+					String owner = readString();
+					String name = readString();
+					String desc = readString();
+					MethodCallValue.StaticMethodCallValue call = new MethodCallValue.StaticMethodCallValue(owner, name, desc, readList());
+					ensureSafe(checker.isStaticMethodSafe(call.getSignature()), call);
+					return register(call);
+				}
+				case VIRTUAL_CALL: {
+					String owner = readString();
+					String name = readString();
+					String desc = readString();
+					List<TypedValue> args = readList();
+					MethodCallValue.VirtualMethodCallValue call = new MethodCallValue.VirtualMethodCallValue(owner, name, desc, args, read());
+					ensureSafe(checker.isMethodSafe(call.getSignature(), call.base, call.args), call);
+					return register(call);
+				}
+				case CALL: {
+					String owner = readString();
+					String name = readString();
+					String desc = readString();
+					List<TypedValue> args = readList();
+					return register(new MethodCallValue(owner, name, desc, args, readType()));
+				}
+				case LAMBDA: {
+					Type type = readType();
+					int handleTag = is.readInt();
+					Handle handle = new Handle(handleTag, readString(), readString(), readString());
+					return register(new LambdaFactory(type, handle, readList()));
+				}
+				default:
+					throw new IOException("Unknown value: " + tag);
+			}
+		}
+	}
+}
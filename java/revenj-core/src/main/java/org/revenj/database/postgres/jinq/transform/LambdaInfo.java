@@ -113,4 +113,11 @@ public class LambdaInfo {
 	public String getLambdaSourceString() {
 		return serializedLambda.implClass + "#" + serializedLambda.implMethodName + serializedLambda.implMethodSignature;
 	}
+
+	/**
+	 * @return type descriptor of the value returned by the lambda, eg. I or Ljava/lang/String;
+	 */
+	public String getReturnTypeDescriptor() {
+		return Type.getReturnType(serializedLambda.implMethodSignature).getDescriptor();
+	}
 }
\ No newline at end of file
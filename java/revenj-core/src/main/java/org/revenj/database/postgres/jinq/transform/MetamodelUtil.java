@@ -27,6 +27,7 @@ public abstract class MetamodelUtil {
 	protected final Map<MethodSignature, TypedValue.ComparisonValue.ComparisonOp> staticComparisonMethods;
 	protected final Map<MethodSignature, TypedValue.ComparisonValue.ComparisonOp> staticComparisonMethodsWithObjectEquals;
 	protected final Map<Class<?>, Function> specificationRewrites;
+	private LambdaAnalysisCache analysisCache;
 
 	class MetamodelUtilAttribute {
 		public final String name;
@@ -260,6 +261,14 @@ public abstract class MetamodelUtil {
 		return safeStaticMethods;
 	}
 
+	public LambdaAnalysisCache getAnalysisCache() {
+		return analysisCache;
+	}
+
+	public void setAnalysisCache(LambdaAnalysisCache analysisCache) {
+		this.analysisCache = analysisCache;
+	}
+
 	public MethodChecker getMethodChecker(boolean isObjectEqualsSafe, boolean isCollectionContainsSafe) {
 		return new MethodChecker(
 				getSafeMethodAnnotations(),
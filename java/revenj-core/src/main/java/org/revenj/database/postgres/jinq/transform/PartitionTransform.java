@@ -0,0 +1,55 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import org.revenj.database.postgres.jinq.jpqlquery.*;
+
+/**
+ * Restricts query to one of the hash partitions of its data source.
+ * Rows are assigned to partitions by the hash of the whole row, so it works for tables and views alike
+ * and equal rows always end up in the same partition.
+ */
+public class PartitionTransform extends RevenjNoLambdaQueryTransform {
+	public PartitionTransform(RevenjQueryTransformConfiguration config, int partitions, int partition) {
+		super(config);
+		this.partitions = partitions;
+		this.partition = partition;
+	}
+
+	private final int partitions;
+	private final int partition;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <U, V> JinqPostgresQuery<U> apply(JinqPostgresQuery<V> query, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException {
+		if (query instanceof SelectFromWhere && query.getClass() == SelectFromWhere.class) {
+			SelectFromWhere<V> sfw = (SelectFromWhere<V>) query;
+			if (sfw.isAggregated || sfw.limit >= 0 || sfw.skip >= 0) {
+				throw new QueryTransformException("Only queries without aggregation, limit or skip can be partitioned");
+			}
+			if (sfw.froms.size() != 1 || !(sfw.froms.get(0) instanceof From.FromDataSource)) {
+				throw new QueryTransformException("Only queries on a single data source can be partitioned");
+			}
+			Expression hash = FunctionExpression.singleParam(
+					"hashtext",
+					FunctionExpression.singleParam("textin", FunctionExpression.singleParam("record_out", new FromAliasExpression(sfw.froms.get(0)))));
+			// int8 avoids abs overflow on int4 minimum
+			Expression bucket = FunctionExpression.twoParam(
+					"mod",
+					FunctionExpression.singleParam("abs", FunctionExpression.singleParam("int8", hash)),
+					new ConstantExpression(Integer.toString(partitions)));
+			Expression condition = new BinaryExpression(bucket, "=", new ConstantExpression(Integer.toString(partition)));
+			SelectFromWhere<U> toReturn = (SelectFromWhere<U>) sfw.shallowCopy();
+			if (sfw.where == null) {
+				toReturn.where = condition;
+			} else {
+				toReturn.where = new BinaryExpression(sfw.where, "AND", condition);
+			}
+			return toReturn;
+		}
+		throw new QueryTransformException("Existing query cannot be transformed further");
+	}
+
+	@Override
+	public String getTransformationTypeCachingTag() {
+		return PartitionTransform.class.getName() + ":" + partitions + ":" + partition;
+	}
+}
@@ -0,0 +1,91 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import ch.epfl.labos.iu.orm.queryll2.path.PathAnalysis;
+import ch.epfl.labos.iu.orm.queryll2.path.TransformationClassAnalyzer;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.ConstantValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodCallValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValueVisitorException;
+import org.revenj.database.postgres.jinq.jpqlquery.ColumnExpressions;
+import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.database.postgres.jinq.jpqlquery.ProjectionRowReader;
+import org.revenj.database.postgres.jinq.jpqlquery.SelectFromWhere;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the select list with the columns used in the projection lambda.
+ * Unlike select transform it can be applied after sorting and paging
+ * since it doesn't change which rows are returned.
+ */
+public class ProjectionTransform extends RevenjOneLambdaQueryTransform {
+
+	public ProjectionTransform(RevenjQueryTransformConfiguration config) {
+		super(config);
+	}
+
+	private static boolean isTupleConstructor(MethodSignature sig) {
+		return TransformationClassAnalyzer.newPair.equals(sig)
+				|| TransformationClassAnalyzer.newTuple3.equals(sig)
+				|| TransformationClassAnalyzer.newTuple4.equals(sig)
+				|| TransformationClassAnalyzer.newTuple5.equals(sig)
+				|| TransformationClassAnalyzer.newTuple6.equals(sig)
+				|| TransformationClassAnalyzer.newTuple7.equals(sig)
+				|| TransformationClassAnalyzer.newTuple8.equals(sig);
+	}
+
+	private static void columnTypes(TypedValue value, List<String> types) {
+		if (value instanceof MethodCallValue && isTupleConstructor(((MethodCallValue) value).getSignature())) {
+			for (TypedValue arg : ((MethodCallValue) value).args) {
+				columnTypes(arg, types);
+			}
+		} else {
+			types.add(value.getType().getClassName());
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <U, V> JinqPostgresQuery<U> apply(JinqPostgresQuery<V> query, LambdaAnalysis lambda, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException {
+		if (!(query instanceof SelectFromWhere) || query.isSelectFromWhereGroupHaving()) {
+			throw new QueryTransformException("Existing query cannot be projected");
+		}
+		SelectFromWhere<V> sfw = (SelectFromWhere<V>) query;
+		if (sfw.isAggregated || sfw.isDistinct) {
+			throw new QueryTransformException("Existing query cannot be projected");
+		}
+		try {
+			SelectFromWhereLambdaArgumentHandler argHandler = SelectFromWhereLambdaArgumentHandler.fromSelectFromWhere(sfw, lambda, config.metamodel, parentArgumentScope, false);
+			SymbExToColumns translator = config.newSymbExToColumns(argHandler, lambda.getLambdaIndex());
+
+			ColumnExpressions<U> returnExpr = makeSelectExpression(translator, lambda);
+
+			// null constants don't carry the type, so pick a path which returns a value
+			TypedValue returnValue = null;
+			for (PathAnalysis path : lambda.symbolicAnalysis.paths) {
+				returnValue = path.getReturnValue();
+				if (!(returnValue instanceof ConstantValue.NullConstant)) break;
+			}
+			List<String> types = new ArrayList<>(returnExpr.getNumColumns());
+			columnTypes(returnValue, types);
+			if (types.size() != returnExpr.getNumColumns()) {
+				throw new QueryTransformException("Unable to detect types of projected columns");
+			}
+			ColumnExpressions<U> cols = new ColumnExpressions<>(new ProjectionRowReader<>(returnExpr.reader, types.toArray(new String[0])));
+			cols.columns.addAll(returnExpr.columns);
+
+			SelectFromWhere<U> toReturn = (SelectFromWhere<U>) sfw.shallowCopy();
+			toReturn.cols = cols;
+			return toReturn;
+		} catch (TypedValueVisitorException e) {
+			throw new QueryTransformException(e);
+		}
+	}
+
+	@Override
+	public String getTransformationTypeCachingTag() {
+		return ProjectionTransform.class.getName();
+	}
+}
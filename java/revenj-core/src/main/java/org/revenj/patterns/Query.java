@@ -2,8 +2,13 @@ package org.revenj.patterns;
 
 import java.io.Serializable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public interface Query<T> {
@@ -23,6 +28,32 @@ public interface Query<T> {
 
 	<V> Query<T> sortedDescendingBy(Compare<T, V> order);
 
+	default Query<T> parallel(int degree) {
+		return this;
+	}
+
+	default Query<T> after(T item) {
+		throw new UnsupportedOperationException("Seek pagination is not supported by " + getClass().getName());
+	}
+
+	default Query<T> afterKeys(Object... keys) {
+		throw new UnsupportedOperationException("Seek pagination is not supported by " + getClass().getName());
+	}
+
+	@FunctionalInterface
+	interface Select<U, V> extends Serializable {
+		V select(U item);
+	}
+
+	default <V> List<V> select(Select<T, V> projection) throws IOException {
+		List<T> items = list();
+		List<V> result = new ArrayList<>(items.size());
+		for (T item : items) {
+			result.add(projection.select(item));
+		}
+		return result;
+	}
+
 	long count() throws IOException;
 
 	boolean anyMatch(Specification<? super T> predicate) throws IOException;
@@ -41,7 +72,53 @@ public interface Query<T> {
 
 	List<T> list() throws IOException;
 
+	@FunctionalInterface
+	interface Compiled<T> {
+		List<T> list(Object... arguments) throws IOException;
+	}
+
+	default Compiled<T> compile() {
+		return arguments -> {
+			if (arguments != null && arguments.length > 0) {
+				throw new IllegalArgumentException("Query " + getClass().getName() + " can't rebind arguments. Only compiled queries without arguments are supported");
+			}
+			return list();
+		};
+	}
+
 	default Stream<T> stream() throws IOException {
 		return list().stream();
 	}
+
+	// query is executed on the executor.
+	// query created within a transaction scope will use the scope connection from the executor thread,
+	// so that connection should not be used until the future completes
+	default CompletableFuture<List<T>> listAsync(Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return list();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	default CompletableFuture<List<T>> listAsync() {
+		return listAsync(ForkJoinPool.commonPool());
+	}
+
+	// same as listAsync(Executor) regarding the scope connection
+	default CompletableFuture<Long> countAsync(Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return count();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	default CompletableFuture<Long> countAsync() {
+		return countAsync(ForkJoinPool.commonPool());
+	}
 }
@@ -3,6 +3,9 @@ package org.revenj.patterns;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public interface Repository<T extends Identifiable> {
 	List<T> find(String[] uris);
@@ -15,4 +18,24 @@ public interface Repository<T extends Identifiable> {
 		List<T> result = find(new String[] { uri });
 		return result.isEmpty() ? Optional.<T>empty() : Optional.of(result.get(0));
 	}
+
+	// lookup is executed on the executor.
+	// repository resolved within a transaction scope will use the scope connection from the executor thread,
+	// so that connection should not be used until the future completes
+	default CompletableFuture<List<T>> findAsync(String[] uris, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> find(uris), executor);
+	}
+
+	default CompletableFuture<List<T>> findAsync(String[] uris) {
+		return findAsync(uris, ForkJoinPool.commonPool());
+	}
+
+	// same as findAsync(String[], Executor) regarding the scope connection
+	default CompletableFuture<Optional<T>> findAsync(String uri, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> find(uri), executor);
+	}
+
+	default CompletableFuture<Optional<T>> findAsync(String uri) {
+		return findAsync(uri, ForkJoinPool.commonPool());
+	}
 }
@@ -1,6 +1,9 @@
 package org.revenj.patterns;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public interface SearchableRepository<T extends DataSource> {
 
@@ -42,4 +45,32 @@ public interface SearchableRepository<T extends DataSource> {
 	default boolean exists() {
 		return exists(null);
 	}
+
+	// search is executed on the executor.
+	// repository resolved within a transaction scope will use the scope connection from the executor thread,
+	// so that connection should not be used until the future completes
+	default CompletableFuture<List<T>> searchAsync(
+			Specification<T> specification,
+			Integer limit,
+			Integer offset,
+			Executor executor) {
+		return CompletableFuture.supplyAsync(() -> search(specification, limit, offset), executor);
+	}
+
+	default CompletableFuture<List<T>> searchAsync(Specification<T> specification, Integer limit, Integer offset) {
+		return searchAsync(specification, limit, offset, ForkJoinPool.commonPool());
+	}
+
+	default CompletableFuture<List<T>> searchAsync(Specification<T> specification) {
+		return searchAsync(specification, null, null);
+	}
+
+	// same as searchAsync regarding the scope connection
+	default CompletableFuture<Long> countAsync(Specification<T> specification, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> count(specification), executor);
+	}
+
+	default CompletableFuture<Long> countAsync(Specification<T> specification) {
+		return countAsync(specification, ForkJoinPool.commonPool());
+	}
 }
@@ -5,6 +5,7 @@ import org.revenj.patterns.Specification;
 import org.revenj.patterns.DataSource;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.security.Principal;
 import java.util.List;
 import java.util.Objects;
@@ -24,6 +25,22 @@ public interface PermissionManager {
 
 	<T, S extends T> List<S> applyFilters(Class<T> manifest, Principal user, List<S> data);
 
+	default boolean hasFilters(Class<?> manifest, Principal user) {
+		return true;
+	}
+
+	default <T, S extends T> List<S> applyFilters(
+			Class<T> manifest,
+			Principal user,
+			Query<S> data,
+			Integer limit,
+			Integer offset) throws IOException {
+		Query<S> result = applyFilters(manifest, user, data);
+		if (offset != null) result = result.skip(offset);
+		if (limit != null) result = result.limit(limit);
+		return result.list();
+	}
+
 	default <T, S extends T> List<S> applyFilters(Class<T> manifest, List<S> data) {
 		return applyFilters(manifest, boundPrincipal.get(), data);
 	}
@@ -2,8 +2,29 @@ package org.revenj;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.extensibility.Container;
+import org.revenj.extensibility.PluginLoader;
+import org.revenj.extensibility.SystemState;
+import org.revenj.patterns.*;
+import org.revenj.serialization.Serialization;
+import rx.Observable;
+import rx.subjects.PublishSubject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TestCommon {
 
@@ -18,4 +39,566 @@ public class TestCommon {
 		Assert.assertTrue(t2.isAncestor(t1));
 		Assert.assertTrue(t2.isAncestor(t2));
 	}
+
+	static class Item implements DataSource {
+	}
+
+	static final class ItemRepository implements SearchableRepository<Item> {
+		int searches;
+		int counts;
+
+		@Override
+		public Query<Item> query(Specification<Item> specification) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<Item> search(Specification<Item> specification, Integer limit, Integer offset) {
+			searches++;
+			return Collections.singletonList(new Item());
+		}
+
+		@Override
+		public long count(Specification<Item> specification) {
+			counts++;
+			return 1;
+		}
+
+		@Override
+		public boolean exists(Specification<Item> specification) {
+			return true;
+		}
+	}
+
+	private static java.sql.Connection transactionConnection(boolean autoCommit) {
+		return (java.sql.Connection) java.lang.reflect.Proxy.newProxyInstance(
+				java.sql.Connection.class.getClassLoader(),
+				new Class<?>[]{java.sql.Connection.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getAutoCommit":
+							return autoCommit;
+						case "isClosed":
+							return false;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+	}
+
+	@Test
+	public void resultCacheInvalidation() {
+		PublishSubject<DataChangeNotification.NotifyInfo> subject = PublishSubject.create();
+		DataChangeNotification notifications = new DataChangeNotification() {
+			@Override
+			public Observable<NotifyInfo> getNotifications() {
+				return subject;
+			}
+
+			@Override
+			public <T> Observable<TrackInfo<T>> track(Class<T> manifest) {
+				return Observable.empty();
+			}
+		};
+		DomainModel model = name -> "test.Item".equals(name) ? Optional.of(Item.class) : Optional.empty();
+		ItemRepository repository = new ItemRepository();
+		try (QueryResultCache cache = new QueryResultCache(notifications, model, new String[]{"test.Item"}, 10, 60000, 100)) {
+			SearchableRepository<Item> cached = cache.wrap(Item.class, repository);
+			Assert.assertEquals(1, cached.search(null, 10, null).size());
+			Assert.assertEquals(1, cached.search(null, 10, null).size());
+			Assert.assertEquals(1, cached.count());
+			Assert.assertEquals(1, cached.count());
+			Assert.assertEquals(1, repository.searches);
+			Assert.assertEquals(1, repository.counts);
+			cached.search(it -> true);
+			cached.search(it -> true);
+			Assert.assertEquals(3, repository.searches);
+			subject.onNext(new DataChangeNotification.NotifyInfo("test.Other", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"1"}));
+			cached.search(null, 10, null);
+			Assert.assertEquals(3, repository.searches);
+			subject.onNext(new DataChangeNotification.NotifyInfo("test.Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"1"}));
+			Assert.assertEquals(0, cache.size());
+			cached.search(null, 10, null);
+			Assert.assertEquals(4, repository.searches);
+			Assert.assertEquals(1, cache.getInvalidations());
+			SimpleContainer locator = new SimpleContainer(false);
+			Assert.assertNotSame(repository, cache.wrap(Item.class, repository, locator));
+			locator.registerInstance(java.sql.Connection.class, transactionConnection(false), false);
+			Assert.assertSame(repository, cache.wrap(Item.class, repository, locator));
+		}
+		Assert.assertFalse(subject.hasObservers());
+	}
+
+	static final class Node implements Identifiable {
+		private final String uri;
+
+		Node(String uri) {
+			this.uri = uri;
+		}
+
+		@Override
+		public String getURI() {
+			return uri;
+		}
+	}
+
+	static final class NodeRepository implements Repository<Node> {
+		int finds;
+
+		@Override
+		public List<Node> find(String[] uris) {
+			finds++;
+			List<Node> result = new ArrayList<>(uris.length);
+			for (String uri : uris) {
+				result.add(new Node(uri));
+			}
+			return result;
+		}
+	}
+
+	private static final SystemState IDLE_STATE = new SystemState() {
+		public boolean isBooting() {
+			return false;
+		}
+
+		public boolean isReady() {
+			return true;
+		}
+
+		public Observable<Container> ready() {
+			return Observable.empty();
+		}
+
+		public Observable<SystemEvent> change() {
+			return Observable.empty();
+		}
+
+		public void notify(SystemEvent value) {
+		}
+	};
+
+	@Test
+	public void coalescedNotifications() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		properties.setProperty("revenj.notifications.coalesceMillis", "60000");
+		DomainModel model = name -> "test.Node".equals(name) ? Optional.of(Node.class) : Optional.empty();
+		NodeRepository repository = new NodeRepository();
+		ServiceLocator locator = type -> repository;
+		PostgresDatabaseNotification notification = new PostgresDatabaseNotification(null, Optional.of(model), properties, IDLE_STATE, locator);
+		List<DataChangeNotification.NotifyInfo> received = new ArrayList<>();
+		List<DataChangeNotification.TrackInfo<Node>> first = new ArrayList<>();
+		List<DataChangeNotification.TrackInfo<Node>> second = new ArrayList<>();
+		notification.getNotifications().subscribe(received::add);
+		notification.track(Node.class).subscribe(first::add);
+		notification.track(Node.class).subscribe(second::add);
+		PostgresReader reader = new PostgresReader();
+		notification.processNotification(reader, new org.postgresql.core.Notification("aggregate_roots", 1, "test.Node:Update:{1,2}"));
+		notification.processNotification(reader, new org.postgresql.core.Notification("aggregate_roots", 1, "test.Node:Update:{2,3}"));
+		Assert.assertEquals(0, received.size());
+		notification.processNotification(reader, new org.postgresql.core.Notification("aggregate_roots", 1, "test.Node:Delete:{4}"));
+		Assert.assertEquals(1, received.size());
+		Assert.assertArrayEquals(new String[]{"1", "2", "3"}, received.get(0).uris);
+		Assert.assertTrue(notification.hasPending());
+		notification.flush();
+		Assert.assertFalse(notification.hasPending());
+		Assert.assertEquals(2, received.size());
+		Assert.assertEquals(DataChangeNotification.Operation.Delete, received.get(1).operation);
+		Assert.assertEquals(3, first.get(0).result.call().size());
+		Assert.assertEquals(3, second.get(0).result.call().size());
+		Assert.assertEquals(1, repository.finds);
+		notification.close();
+	}
+
+	@Test
+	public void intSettingParsing() {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.test", "12");
+		Assert.assertEquals(12, Utils.intSetting(properties, "revenj.test", 1));
+		Assert.assertEquals(1, Utils.intSetting(properties, "revenj.missing", 1));
+		Assert.assertEquals(1, Utils.intSetting(null, "revenj.test", 1));
+		properties.setProperty("revenj.test", "abc");
+		try {
+			Utils.intSetting(properties, "revenj.test", 1);
+			Assert.fail("Expecting invalid setting to be rejected");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("Error parsing revenj.test setting", e.getMessage());
+			Assert.assertTrue(e.getCause() instanceof NumberFormatException);
+		}
+	}
+
+	@Test
+	public void localNotificationFlushesCoalesced() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		properties.setProperty("revenj.notifications.coalesceMillis", "60000");
+		DomainModel model = name -> Optional.empty();
+		PostgresDatabaseNotification notification = new PostgresDatabaseNotification(null, Optional.of(model), properties, IDLE_STATE, type -> null);
+		List<DataChangeNotification.NotifyInfo> received = new ArrayList<>();
+		notification.getNotifications().subscribe(received::add);
+		notification.processNotification(new PostgresReader(), new org.postgresql.core.Notification("aggregate_roots", 1, "test.Node:Insert:{1}"));
+		Assert.assertEquals(0, received.size());
+		notification.notify(new DataChangeNotification.NotifyInfo("test.Node", DataChangeNotification.Operation.Update, DataChangeNotification.Source.Local, new String[]{"1"}));
+		Assert.assertFalse(notification.hasPending());
+		Assert.assertEquals(2, received.size());
+		Assert.assertEquals(DataChangeNotification.Source.Database, received.get(0).source);
+		Assert.assertEquals(DataChangeNotification.Source.Local, received.get(1).source);
+		notification.close();
+	}
+
+	@Test
+	public void replicationMessage() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		DomainModel model = name -> Optional.empty();
+		PostgresDatabaseNotification notification = new PostgresDatabaseNotification(null, Optional.of(model), properties, IDLE_STATE, type -> null);
+		List<DataChangeNotification.NotifyInfo> received = new ArrayList<>();
+		notification.getNotifications().subscribe(received::add);
+		PostgresReader reader = new PostgresReader();
+		notification.processReplicationMessage(reader, relation(1, "test", "Node", new boolean[]{true, false}));
+		notification.processReplicationMessage(reader, relation(2, "test", "Pair", new boolean[]{true, true}));
+		notification.processReplicationMessage(reader, ByteBuffer.wrap(new byte[]{'B'}));
+		notification.processReplicationMessage(reader, change('I', 1, "7", "a"));
+		notification.processReplicationMessage(reader, change('I', 1, "8", "b"));
+		notification.processReplicationMessage(reader, change('U', 2, "x/y", "z"));
+		notification.processReplicationMessage(reader, change('D', 1, "7", null));
+		Assert.assertEquals(0, received.size());
+		notification.processReplicationMessage(reader, ByteBuffer.wrap(new byte[]{'C'}));
+		Assert.assertEquals(3, received.size());
+		Assert.assertEquals("test.Node", received.get(0).name);
+		Assert.assertEquals(DataChangeNotification.Operation.Insert, received.get(0).operation);
+		Assert.assertArrayEquals(new String[]{"7", "8"}, received.get(0).uris);
+		Assert.assertEquals("test.Pair", received.get(1).name);
+		Assert.assertEquals(DataChangeNotification.Operation.Update, received.get(1).operation);
+		Assert.assertArrayEquals(new String[]{"x\\/y/z"}, received.get(1).uris);
+		Assert.assertEquals(DataChangeNotification.Operation.Delete, received.get(2).operation);
+		Assert.assertArrayEquals(new String[]{"7"}, received.get(2).uris);
+		notification.close();
+	}
+
+	private static ByteBuffer relation(int oid, String schema, String table, boolean[] keys) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeByte('R');
+		out.writeInt(oid);
+		out.write(schema.getBytes("UTF-8"));
+		out.writeByte(0);
+		out.write(table.getBytes("UTF-8"));
+		out.writeByte(0);
+		out.writeByte('d');
+		out.writeShort(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			out.writeByte(keys[i] ? 1 : 0);
+			out.write(("col" + i).getBytes("UTF-8"));
+			out.writeByte(0);
+			out.writeInt(25);
+			out.writeInt(-1);
+		}
+		return ByteBuffer.wrap(os.toByteArray());
+	}
+
+	private static ByteBuffer change(char kind, int oid, String... values) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeByte(kind);
+		out.writeInt(oid);
+		out.writeByte(kind == 'D' ? 'K' : 'N');
+		out.writeShort(values.length);
+		for (String value : values) {
+			if (value == null) {
+				out.writeByte('n');
+			} else {
+				byte[] bytes = value.getBytes("UTF-8");
+				out.writeByte('t');
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		return ByteBuffer.wrap(os.toByteArray());
+	}
+
+	public static final class QueuedEvent implements DomainEvent {
+		public final String value;
+
+		public QueuedEvent(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String getURI() {
+			return value;
+		}
+
+		@Override
+		public java.time.OffsetDateTime getQueuedAt() {
+			return null;
+		}
+
+		@Override
+		public java.time.OffsetDateTime getProcessedAt() {
+			return null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Container eventContainer(List<QueuedEvent> stored, boolean failing) {
+		SimpleContainer container = new SimpleContainer(false);
+		container.registerInstance(ClassLoader.class, TestCommon.class.getClassLoader(), false);
+		container.registerInstance(Utils.makeGenericType(Serialization.class, String.class), new Serialization<String>() {
+			@Override
+			public String serialize(Type type, Object value) {
+				return ((QueuedEvent) value).value;
+			}
+
+			@Override
+			public Object deserialize(Type type, String data) {
+				return new QueuedEvent(data);
+			}
+		}, false);
+		container.registerInstance(Utils.makeGenericType(DomainEventStore.class, QueuedEvent.class), java.lang.reflect.Proxy.newProxyInstance(
+				DomainEventStore.class.getClassLoader(),
+				new Class<?>[]{DomainEventStore.class},
+				(proxy, method, args) -> {
+					if (!"submit".equals(method.getName())) throw new UnsupportedOperationException(method.getName());
+					if (failing) throw new IllegalStateException("database is down");
+					stored.addAll((java.util.Collection<QueuedEvent>) args[0]);
+					return new String[0];
+				}), false);
+		return container;
+	}
+
+	private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	public void eventQueueJournalReplay() throws Exception {
+		File file = File.createTempFile("revenj-events", ".journal");
+		file.deleteOnExit();
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventQueue.journal", file.getAbsolutePath());
+		properties.setProperty("revenj.eventQueue.retryDelay", "1");
+		properties.setProperty("revenj.eventQueue.journalSync", "true");
+		properties.setProperty("revenj.eventQueue.writers", "2");
+		RevenjSystemState state = new RevenjSystemState();
+		List<SystemState.SystemEvent> errors = new CopyOnWriteArrayList<>();
+		state.change().subscribe(errors::add);
+		List<QueuedEvent> stored = new CopyOnWriteArrayList<>();
+		GlobalEventStore failing = new GlobalEventStore(eventContainer(stored, true), null, properties, state);
+		failing.queue(new QueuedEvent("a"));
+		failing.queue(new QueuedEvent("b"));
+		waitFor(() -> errors.stream().mapToInt(it -> it.detail.contains("retried on restart") ? 1 : 0).sum() > 0);
+		failing.close();
+		Assert.assertEquals(0, stored.size());
+		try (java.io.Writer writer = new java.io.FileWriter(file, true)) {
+			writer.write("E\t100\torg.revenj.UnknownEvent\t{}\n");
+		}
+
+		GlobalEventStore working = new GlobalEventStore(eventContainer(stored, false), null, properties, state);
+		working.queue(new QueuedEvent("c"));
+		waitFor(() -> stored.size() == 3);
+		working.close();
+		Assert.assertEquals(new java.util.HashSet<>(Arrays.asList("a", "b", "c")), stored.stream().map(it -> it.value).collect(java.util.stream.Collectors.toSet()));
+		Assert.assertTrue(errors.stream().anyMatch(it -> it.detail.contains("org.revenj.UnknownEvent")));
+		Assert.assertTrue(new String(java.nio.file.Files.readAllBytes(file.toPath()), "UTF-8").contains("org.revenj.UnknownEvent"));
+
+		GlobalEventStore empty = new GlobalEventStore(eventContainer(stored, false), null, properties, state);
+		Thread.sleep(200);
+		empty.close();
+		Assert.assertEquals(3, stored.size());
+	}
+
+	public static final class OrderedHandler implements DomainEventHandler<QueuedEvent> {
+		static final java.util.Map<String, List<Integer>> HANDLED = new java.util.concurrent.ConcurrentHashMap<>();
+
+		@Override
+		public void handle(QueuedEvent event) {
+			String[] parts = event.value.split(":");
+			HANDLED.computeIfAbsent(parts[0], k -> new CopyOnWriteArrayList<>()).add(Integer.parseInt(parts[1]));
+		}
+	}
+
+	private static <T> T stub(Class<T> manifest, java.util.function.BiFunction<String, Object[], Object> answer) {
+		return manifest.cast(java.lang.reflect.Proxy.newProxyInstance(
+				manifest.getClassLoader(),
+				new Class<?>[]{manifest},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return answer.apply(method.getName(), args);
+					}
+				}));
+	}
+
+	private static java.sql.ResultSet singleResult(Object value) {
+		java.util.concurrent.atomic.AtomicBoolean read = new java.util.concurrent.atomic.AtomicBoolean();
+		return stub(java.sql.ResultSet.class, (method, args) -> {
+			switch (method) {
+				case "next":
+					return !read.getAndSet(true);
+				case "getLong":
+				case "getString":
+					return value;
+				default:
+					return null;
+			}
+		});
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void asyncEventDispatchResolvesOnScopeClose() throws Exception {
+		java.util.Map<Long, String> statuses = new java.util.HashMap<>();
+		statuses.put(1L, "committed");
+		statuses.put(2L, "aborted");
+		statuses.put(3L, "committed");
+		statuses.put(4L, "aborted");
+		javax.sql.DataSource dataSource = stub(javax.sql.DataSource.class, (method, args) -> {
+			if (!"getConnection".equals(method)) return null;
+			java.util.concurrent.atomic.AtomicLong requested = new java.util.concurrent.atomic.AtomicLong();
+			java.sql.PreparedStatement ps = stub(java.sql.PreparedStatement.class, (m, a) -> {
+				if ("setLong".equals(m)) requested.set((Long) a[1]);
+				return "executeQuery".equals(m) ? singleResult(statuses.get(requested.get())) : null;
+			});
+			return stub(java.sql.Connection.class, (m, a) -> "prepareStatement".equals(m) ? ps : null);
+		});
+		java.util.concurrent.atomic.AtomicLong transactionId = new java.util.concurrent.atomic.AtomicLong();
+		java.sql.Statement statement = stub(java.sql.Statement.class, (m, a) -> "executeQuery".equals(m) ? singleResult(transactionId.get()) : null);
+		java.sql.Connection connection = stub(java.sql.Connection.class, (m, a) -> {
+			switch (m) {
+				case "getAutoCommit":
+				case "isClosed":
+					return false;
+				case "createStatement":
+					return statement;
+				default:
+					return null;
+			}
+		});
+		SimpleContainer container = new SimpleContainer(false);
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventDispatch.workers", "2");
+		EventDispatcher dispatcher = new EventDispatcher(container, dataSource, properties, new RevenjSystemState());
+		container.registerInstance(EventDispatcher.class, dispatcher, true);
+		Revenj.registerEvents(container, new PluginLoader() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T> List<Class<T>> find(Class<T> manifest, Type... types) {
+				return types[0] == QueuedEvent.class
+						? Collections.singletonList((Class<T>) (Class) OrderedHandler.class)
+						: Collections.emptyList();
+			}
+		}, QueuedEvent.class, QueuedEvent[].class);
+		OrderedHandler.HANDLED.clear();
+		for (long id = 1; id <= 2; id++) {
+			transactionId.set(id);
+			Container scope = container.createScope();
+			scope.registerInstance(java.sql.Connection.class, connection, false);
+			DomainEventHandler<QueuedEvent> inTransaction = scope.resolve(DomainEventHandler.class, QueuedEvent.class);
+			inTransaction.handle(new QueuedEvent("tx" + id + ":1"));
+			Assert.assertTrue(dispatcher.hasDeferred(connection));
+			scope.close();
+			Assert.assertFalse(dispatcher.hasDeferred(connection));
+		}
+		waitFor(() -> OrderedHandler.HANDLED.containsKey("tx1"));
+		transactionId.set(3);
+		Container scope = container.createScope();
+		scope.registerInstance(java.sql.Connection.class, connection, false);
+		DomainEventHandler<QueuedEvent> handler = scope.resolve(DomainEventHandler.class, QueuedEvent.class);
+		handler.handle(new QueuedEvent("tx3:1"));
+		//connection was committed directly and reused for the next transaction
+		transactionId.set(4);
+		handler.handle(new QueuedEvent("tx4:1"));
+		waitFor(() -> OrderedHandler.HANDLED.containsKey("tx3"));
+		scope.close();
+		container.close();
+		Assert.assertFalse(OrderedHandler.HANDLED.containsKey("tx2"));
+		Assert.assertFalse(OrderedHandler.HANDLED.containsKey("tx4"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void asyncEventDispatchKeepsAggregateOrder() throws Exception {
+		SimpleContainer container = new SimpleContainer(false);
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventDispatch.workers", "4");
+		EventDispatcher dispatcher = new EventDispatcher(container, null, properties, new RevenjSystemState());
+		container.registerInstance(EventDispatcher.class, dispatcher, true);
+		//registered after dispatcher, as aspects would do
+		container.registerInstance(
+				EventDispatcher.OrderingKey.class,
+				(EventDispatcher.OrderingKey) event -> ((QueuedEvent) event).value.split(":")[0],
+				false);
+		Revenj.registerEvents(container, new PluginLoader() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T> List<Class<T>> find(Class<T> manifest, Type... types) {
+				return types[0] == QueuedEvent.class
+						? Collections.singletonList((Class<T>) (Class) OrderedHandler.class)
+						: Collections.emptyList();
+			}
+		}, QueuedEvent.class, QueuedEvent[].class);
+		OrderedHandler.HANDLED.clear();
+		Container autoCommit = container.createScope();
+		DomainEventHandler<QueuedEvent> handler = autoCommit.resolve(DomainEventHandler.class, QueuedEvent.class);
+		Assert.assertFalse(handler instanceof OrderedHandler);
+		for (int i = 0; i < 200; i++) {
+			handler.handle(new QueuedEvent("agg" + (i % 10) + ":" + i));
+		}
+		waitFor(() -> dispatcher.getStatistics().containsKey(OrderedHandler.class)
+				&& dispatcher.getStatistics().get(OrderedHandler.class).getHandled() == 200);
+		java.sql.Connection connection = transactionConnection(false);
+		Container transaction = container.createScope();
+		transaction.registerInstance(java.sql.Connection.class, connection, false);
+		DomainEventHandler<QueuedEvent> inTransaction = transaction.resolve(DomainEventHandler.class, QueuedEvent.class);
+		inTransaction.handle(new QueuedEvent("rolled:1"));
+		Assert.assertTrue(dispatcher.hasDeferred(connection));
+		dispatcher.rolledBack(connection);
+		inTransaction.handle(new QueuedEvent("committed:1"));
+		Thread.sleep(50);
+		Assert.assertFalse(OrderedHandler.HANDLED.containsKey("committed"));
+		dispatcher.committed(connection);
+		waitFor(() -> OrderedHandler.HANDLED.containsKey("committed"));
+		transaction.close();
+		autoCommit.close();
+		container.close();
+		Assert.assertFalse(OrderedHandler.HANDLED.containsKey("rolled"));
+		OrderedHandler.HANDLED.remove("committed");
+		Assert.assertEquals(10, OrderedHandler.HANDLED.size());
+		for (List<Integer> handled : OrderedHandler.HANDLED.values()) {
+			List<Integer> sorted = new ArrayList<>(handled);
+			Collections.sort(sorted);
+			Assert.assertEquals(sorted, handled);
+			Assert.assertEquals(20, handled.size());
+		}
+	}
+
+	@Test
+	public void repositoryAsyncUsesExecutor() throws Exception {
+		List<Thread> used = new ArrayList<>();
+		Repository<QueuedEvent> repository = uris -> {
+			used.add(Thread.currentThread());
+			return Collections.emptyList();
+		};
+		List<Runnable> submitted = new ArrayList<>();
+		CompletableFuture<List<QueuedEvent>> found = repository.findAsync(new String[]{"1"}, submitted::add);
+		Assert.assertFalse(found.isDone());
+		Assert.assertEquals(1, submitted.size());
+		Thread worker = new Thread(submitted.get(0));
+		worker.start();
+		worker.join();
+		Assert.assertTrue(found.get().isEmpty());
+		Assert.assertEquals(worker, used.get(0));
+	}
 }
@@ -1,14 +1,38 @@
 package org.revenj;
 
+import ch.epfl.labos.iu.orm.queryll2.symbolic.MethodSignature;
 import org.junit.Assert;
 import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.revenj.database.postgres.PostgresBufferPool;
+import org.revenj.database.postgres.PostgresQueryStatistics;
+import org.revenj.database.postgres.QueryInstrumentation;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.converters.*;
+import org.revenj.database.postgres.jinq.RevenjQueryComposerCache;
+import org.revenj.database.postgres.jinq.jpqlquery.FromAliasExpression;
+import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.database.postgres.jinq.jpqlquery.ReadFieldExpression;
+import org.revenj.database.postgres.jinq.jpqlquery.SelectFromWhere;
+import org.revenj.database.postgres.jinq.transform.KeysetTransform;
+import org.revenj.database.postgres.jinq.transform.LambdaAnalysisCache;
+import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
+import org.revenj.database.postgres.jinq.transform.PartitionTransform;
+import org.revenj.database.postgres.jinq.transform.QueryTransformException;
+import org.revenj.database.postgres.jinq.transform.RevenjQueryTransformConfiguration;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Predicate;
 
 public class TestPostgres {
 
@@ -153,4 +177,296 @@ public class TestPostgres {
 			Assert.assertTrue(ex.getMessage().contains("Invalid revenj.jdbcUrl provided. Expecting: 'jdbc:postgresql"));
 		}
 	}
+
+	@Test
+	public void statementCacheSettings() throws IOException {
+		Properties p = new Properties();
+		p.setProperty("revenj.jdbcUrl", "jdbc:postgresql://localhost/db");
+		org.postgresql.ds.common.BaseDataSource defaults = (org.postgresql.ds.common.BaseDataSource) Revenj.dataSource(p);
+		p.setProperty("revenj.statementCacheSize", "16");
+		p.setProperty("revenj.statementPrepareThreshold", "1");
+		org.postgresql.ds.common.BaseDataSource configured = (org.postgresql.ds.common.BaseDataSource) Revenj.dataSource(p);
+		Assert.assertEquals(16, configured.getPreparedStatementCacheQueries());
+		Assert.assertEquals(1, configured.getPrepareThreshold());
+		Assert.assertNotEquals(16, defaults.getPreparedStatementCacheQueries());
+		Assert.assertNotEquals(1, defaults.getPrepareThreshold());
+	}
+
+	@Test
+	public void nestedEscaping() {
+		PostgresTuple inner = RecordTuple.from(new PostgresTuple[]{
+				StringConverter.toTuple("a\"b\\c'd"),
+				ArrayTuple.create(Arrays.asList("x y", "z\""), StringConverter::toTuple)
+		});
+		PostgresTuple tuple = RecordTuple.from(new PostgresTuple[]{
+				IntConverter.toTuple(1),
+				ArrayTuple.create(Arrays.asList(inner, null), t -> t)
+		});
+		Assert.assertEquals(
+				"'(1,\"{\"\"(\\\\\"\"a\\\\\"\"\\\\\"\"b\\\\\\\\\\\\\\\\c''d\\\\\"\",\\\\\"\"{\\\\\"\"\\\\\"\"x y\\\\\"\"\\\\\"\",\\\\\"\"\\\\\"\"z\\\\\\\\\\\\\\\\\\\\\"\"\\\\\"\"\\\\\"\"\\\\\"\"}\\\\\"\")\"\",NULL}\")'",
+				tuple.buildTuple(true));
+		Assert.assertEquals("\\\\\"\"", PostgresTuple.buildQuoteEscape("10"));
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("k", null);
+		PostgresTuple hstore = RecordTuple.from(new PostgresTuple[]{HstoreConverter.toTuple(map)});
+		Assert.assertEquals("'(\"\"\"k\"\"=>NULL\")'", hstore.buildTuple(true));
+	}
+
+	@Test
+	public void arrayParameterEncoding() throws SQLException {
+		Map<Integer, Object> values = new HashMap<>();
+		PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[]{PreparedStatement.class},
+				(proxy, method, args) -> {
+					if ("setObject".equals(method.getName())) {
+						values.put((Integer) args[0], args[1]);
+					}
+					return null;
+				});
+		PostgresWriter writer = new PostgresWriter();
+		UUID uuid = UUID.fromString("1ed1a0e3-6a0d-4b9e-9a9c-5f1d7a3b2c10");
+		Assert.assertTrue(ArrayParameter.setParameter(writer, ps, 1, Arrays.asList(1, null, -20, Integer.MIN_VALUE)));
+		Assert.assertTrue(ArrayParameter.setParameter(writer, ps, 2, new long[]{Long.MAX_VALUE, -1}));
+		Assert.assertTrue(ArrayParameter.setParameter(writer, ps, 3, new String[]{"abc", "", "NULL", "a b", "x\"y\\z", "{,}"}));
+		Assert.assertTrue(ArrayParameter.setParameter(writer, ps, 4, Collections.singleton(uuid)));
+		Assert.assertTrue(ArrayParameter.setParameter(writer, ps, 5, Arrays.asList(LocalDate.of(2015, 3, 4), null)));
+		Assert.assertFalse(ArrayParameter.setParameter(writer, ps, 6, Arrays.asList(1, 2L)));
+		Assert.assertFalse(ArrayParameter.setParameter(writer, ps, 7, Collections.emptyList()));
+		PGobject ints = (PGobject) values.get(1);
+		Assert.assertEquals("int[]", ints.getType());
+		Assert.assertEquals("{1,NULL,-20,-2147483648}", ints.getValue());
+		Assert.assertEquals("{9223372036854775807,-1}", ((PGobject) values.get(2)).getValue());
+		Assert.assertEquals("{abc,\"\",\"NULL\",\"a b\",\"x\\\"y\\\\z\",\"{,}\"}", ((PGobject) values.get(3)).getValue());
+		Assert.assertEquals("{" + uuid + "}", ((PGobject) values.get(4)).getValue());
+		Assert.assertEquals("uuid[]", ((PGobject) values.get(4)).getType());
+		Assert.assertEquals("{2015-03-04,NULL}", ((PGobject) values.get(5)).getValue());
+		Assert.assertEquals(5, values.size());
+	}
+
+	@Test
+	public void readFromBytes() throws IOException {
+		PostgresReader reader = new PostgresReader();
+		List<String> strings = Arrays.asList("abc", "ćevap", "\uD83D\uDE00", null, "žlica");
+		PostgresTuple tuple = ArrayTuple.create(strings, StringConverter::toTuple);
+		byte[] bytes = tuple.buildTuple(false).getBytes(StandardCharsets.UTF_8);
+		reader.process(bytes);
+		Assert.assertEquals(strings, StringConverter.parseCollection(reader, 0, true));
+		List<UUID> uuids = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+		String value = ArrayTuple.create(uuids, UuidConverter::toTuple).buildTuple(false);
+		byte[] padded = ("xx" + value + "yy").getBytes(StandardCharsets.UTF_8);
+		reader.process(ByteBuffer.wrap(padded, 2, value.length()));
+		Assert.assertEquals(uuids, UuidConverter.parseCollection(reader, 0, false));
+		reader.process(value);
+		Assert.assertEquals(uuids, UuidConverter.parseCollection(reader, 0, false));
+		try {
+			reader.process(new byte[]{'{', (byte) 0xc3, '}'});
+			Assert.fail("Expecting invalid UTF-8 to be rejected");
+		} catch (IOException ignore) {
+		}
+	}
+
+	@Test
+	public void bufferPoolReuse() {
+		PostgresBufferPool pool = new PostgresBufferPool(12, 4096, 4);
+		char[] small = pool.take(100);
+		Assert.assertEquals(128, small.length);
+		pool.release(small);
+		Assert.assertSame(small, pool.take(65));
+		Assert.assertEquals(1, pool.getHits());
+		Assert.assertEquals(1, pool.getMisses());
+		char[] large = pool.take(5000);
+		Assert.assertEquals(5000, large.length);
+		Assert.assertEquals(1, pool.getOversizeAllocations());
+		pool.release(new char[2048]);
+		pool.release(new char[2048]);
+		pool.release(new char[2048]);
+		Assert.assertEquals(1, pool.getDropped());
+		pool.trim(1024);
+		pool.take(2048);
+		Assert.assertEquals(2, pool.getMisses());
+	}
+
+	@Test
+	public void bufferPoolTrimsIdleClasses() throws InterruptedException {
+		PostgresBufferPool pool = new PostgresBufferPool(12, 4096, 4, 1);
+		char[] idle = new char[2048];
+		pool.release(idle);
+		Thread.sleep(5);
+		pool.release(pool.take(128));
+		Assert.assertNotSame(idle, pool.take(2048));
+		Assert.assertEquals(2, pool.getMisses());
+	}
+
+	@Test
+	public void threadInstancesKeepSmallBuffers() {
+		PostgresWriter writer = PostgresWriter.create();
+		writer.write("abc");
+		writer.close();
+		Assert.assertSame(writer, PostgresWriter.create());
+		Assert.assertEquals(0, writer.length());
+		Assert.assertSame(PostgresReader.create(null), PostgresReader.create(null));
+	}
+
+	@Test
+	public void writerAfterClose() {
+		PostgresWriter writer = PostgresWriter.create();
+		for (int i = 0; i < 1000; i++) {
+			writer.write("abc");
+		}
+		Assert.assertEquals(3000, writer.length());
+		writer.close();
+		writer.write('x');
+		writer.write("yz");
+		Assert.assertEquals("xyz", writer.toString());
+		writer.close();
+	}
+
+	static class LambdaSource {
+		static Predicate<Integer> range() {
+			return v -> v > 0 && v != 42;
+		}
+
+		static Predicate<String> text() {
+			return s -> "abc".equals(s) || s == null;
+		}
+	}
+
+	@Test
+	public void lambdaAnalysisCache() throws IOException {
+		File file = File.createTempFile("lambdas", ".cache");
+		Assert.assertTrue(file.delete());
+		MetamodelUtil metamodel = new MetamodelUtil() {
+			@Override
+			public <U> String dataSourceNameFromClass(Class<U> dataSource) {
+				return null;
+			}
+
+			@Override
+			public String dataSourceNameFromClassName(String className) {
+				return null;
+			}
+		};
+		ClassLoader loader = TestPostgres.class.getClassLoader();
+		String className = "org/revenj/TestPostgres$LambdaSource";
+		try {
+			LambdaAnalysisCache cache = new LambdaAnalysisCache(file);
+			Assert.assertEquals(2, cache.preanalyze(metamodel, loader, className));
+			Assert.assertEquals(2, cache.getMisses());
+			Assert.assertEquals(2, cache.size());
+			cache.close();
+			LambdaAnalysisCache loaded = new LambdaAnalysisCache(file);
+			Assert.assertEquals(2, loaded.size());
+			Assert.assertEquals(2, loaded.preanalyze(metamodel, loader, className));
+			Assert.assertEquals(2, loaded.getHits());
+			Assert.assertEquals(0, loaded.getMisses());
+			metamodel.getSafeMethods().add(new MethodSignature("org/revenj/TestPostgres", "floatIssue", "()V"));
+			Assert.assertEquals(2, loaded.preanalyze(metamodel, loader, className));
+			Assert.assertEquals(2, loaded.getMisses());
+			metamodel.getSafeMethods().remove(new MethodSignature("org/revenj/TestPostgres", "floatIssue", "()V"));
+			metamodel.getSafeMethods().add(new MethodSignature("org/revenj/TestPostgres", "bufferPoolReuse", "()V"));
+			Assert.assertEquals(2, loaded.preanalyze(metamodel, loader, className));
+			Assert.assertEquals(4, loaded.getMisses());
+			Assert.assertEquals(2, loaded.preanalyze(metamodel, loader, className));
+			Assert.assertEquals(4, loaded.getHits());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void boundedQueryCache() {
+		RevenjQueryComposerCache cache = new RevenjQueryComposerCache(10);
+		Assert.assertNull(cache.findInCache(null, "where", new String[]{"a"}));
+		Optional<JinqPostgresQuery<?>> first = Optional.empty();
+		Assert.assertSame(first, cache.cacheQuery(null, "where", new String[]{"a"}, first));
+		Assert.assertSame(first, cache.cacheQuery(null, "where", new String[]{"a"}, Optional.empty()));
+		Assert.assertSame(first, cache.findInCache(null, "where", new String[]{"a"}));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		for (int i = 0; i < 100; i++) {
+			cache.cacheQuery(null, "where", new String[]{"lambda" + i}, Optional.empty());
+			Assert.assertTrue(cache.size() <= 10);
+		}
+		Assert.assertEquals(101 - cache.size(), cache.getEvictions());
+	}
+
+	private static SelectFromWhere<Object> sortedQuery(boolean... ascending) {
+		SelectFromWhere<Object> query = (SelectFromWhere<Object>) JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		for (int i = 0; i < ascending.length; i++) {
+			SelectFromWhere.SortingParameters sort = new SelectFromWhere.SortingParameters();
+			sort.expr = new ReadFieldExpression(new FromAliasExpression(query.froms.get(0)), "\"key" + i + "\"");
+			sort.isAscending = ascending[i];
+			query.sort.add(sort);
+		}
+		return query;
+	}
+
+	@Test
+	public void keysetPagination() throws QueryTransformException {
+		RevenjQueryTransformConfiguration config = new RevenjQueryTransformConfiguration();
+		JinqPostgresQuery<Object> same = new KeysetTransform(config, 0, new String[]{"java.lang.String", "java.lang.Integer"})
+				.apply(sortedQuery(false, false), null);
+		String sql = same.getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE ROW((A.\"key0\"), (A.\"key1\")) < ROW(?, ?)"));
+		Assert.assertTrue(sql, sql.endsWith(" ORDER BY (A.\"key0\") DESC, (A.\"key1\") DESC"));
+		Assert.assertEquals(2, same.getQueryParameters().size());
+		JinqPostgresQuery<Object> mixed = new KeysetTransform(config, 0, new String[]{"java.lang.String", "java.lang.Integer"})
+				.apply(sortedQuery(true, false), null);
+		sql = mixed.getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE (A.\"key0\") > ? OR (A.\"key0\") IS NULL OR (A.\"key0\") = ? AND (A.\"key1\") < ?"));
+		Assert.assertEquals(3, mixed.getQueryParameters().size());
+		JinqPostgresQuery<Object> nullAscending = new KeysetTransform(config, 0, new String[]{null, "java.lang.Integer"})
+				.apply(sortedQuery(true, true), null);
+		sql = nullAscending.getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE (A.\"key0\") IS NULL AND ((A.\"key1\") > ? OR (A.\"key1\") IS NULL)"));
+		Assert.assertEquals(1, nullAscending.getQueryParameters().size());
+		JinqPostgresQuery<Object> nullDescending = new KeysetTransform(config, 0, new String[]{null, "java.lang.Integer"})
+				.apply(sortedQuery(false, false), null);
+		sql = nullDescending.getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE (A.\"key0\") IS NOT NULL OR (A.\"key0\") IS NULL AND (A.\"key1\") < ?"));
+		sql = new KeysetTransform(config, 0, new String[]{null}).apply(sortedQuery(true), null).getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE FALSE"));
+		try {
+			new KeysetTransform(config, 0, new String[]{"java.lang.String"}).apply(sortedQuery(true, false), null);
+			Assert.fail("Expecting exception");
+		} catch (QueryTransformException ignore) {
+		}
+	}
+
+	@Test
+	public void partitionedQuery() throws QueryTransformException {
+		RevenjQueryTransformConfiguration config = new RevenjQueryTransformConfiguration();
+		JinqPostgresQuery<Object> partition = new PartitionTransform(config, 4, 3).apply(sortedQuery(true), null);
+		String sql = partition.getQueryString();
+		Assert.assertTrue(sql, sql.contains(" WHERE mod(abs(int8(hashtext(textin(record_out(A))))), 4) = 3 ORDER BY"));
+		SelectFromWhere<Object> limited = sortedQuery(true);
+		limited.limit = 10;
+		try {
+			new PartitionTransform(config, 4, 0).apply(limited, null);
+			Assert.fail("Expecting exception");
+		} catch (QueryTransformException ignore) {
+		}
+	}
+
+	@Test
+	public void queryStatisticsHistogram() {
+		PostgresQueryStatistics statistics = new PostgresQueryStatistics(10, 1, 2);
+		for (int i = 1; i <= 3; i++) {
+			statistics.executed(new QueryInstrumentation.Execution(String.class, "list", "SELECT " + i, Collections.emptyList(), 20000000L * i, 1000000L, i, null));
+		}
+		statistics.executed(new QueryInstrumentation.Execution(String.class, "count", "SELECT 0", Collections.emptyList(), 500000L, 0, 1, null));
+		Assert.assertEquals(4, statistics.getExecutions());
+		Assert.assertEquals(7, statistics.getRows());
+		Assert.assertEquals(3, statistics.getSlowQueryCount());
+		List<QueryInstrumentation.Execution> slow = statistics.getSlowQueries();
+		Assert.assertEquals(2, slow.size());
+		Assert.assertEquals("SELECT 3", slow.get(1).sql);
+		long[] histogram = statistics.getHistogram();
+		Assert.assertEquals(1, histogram[9]);
+		Assert.assertEquals(512, PostgresQueryStatistics.bucketUpperBoundMicros(9));
+		Assert.assertEquals(4, Arrays.stream(histogram).sum());
+		Assert.assertTrue(statistics.explain("SELECT 1", 10000000L));
+		Assert.assertFalse(statistics.explain("SELECT 1", 9999999L));
+	}
 }
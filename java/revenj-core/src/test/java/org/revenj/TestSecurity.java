@@ -4,10 +4,13 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.revenj.extensibility.Container;
 import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Query;
+import org.revenj.patterns.Specification;
 import org.revenj.security.PermissionManager;
 import org.revenj.security.UserPrincipal;
 
 import java.io.Closeable;
+import java.lang.reflect.Proxy;
 import java.security.Principal;
 import java.util.*;
 
@@ -66,4 +69,64 @@ public class TestSecurity {
 		Assert.assertEquals(3, filtered1.size());
 		Assert.assertEquals(3, filtered2.size());
 	}
+
+	static class NotTranslatable implements Specification<Model> {
+		@Override
+		public boolean test(Model model) {
+			return model.i != 7;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Query<Model> listQuery(List<Model> values, List<Specification<Model>> translated) {
+		return (Query<Model>) Proxy.newProxyInstance(Query.class.getClassLoader(), new Class<?>[]{Query.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "filter":
+					if (args[0] instanceof NotTranslatable) {
+						throw new IllegalArgumentException("Unable to translate specification");
+					}
+					translated.add((Specification<Model>) args[0]);
+					List<Model> filtered = new ArrayList<>();
+					for (Model m : values) {
+						if (((Specification<Model>) args[0]).test(m)) filtered.add(m);
+					}
+					return listQuery(filtered, translated);
+				case "skip":
+					return listQuery(values.subList((int) Math.min((long) args[0], values.size()), values.size()), translated);
+				case "limit":
+					return listQuery(values.subList(0, (int) Math.min((long) args[0], values.size())), translated);
+				case "list":
+					return values;
+				case "stream":
+					return values.stream();
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	@Test
+	public void filterPushdown() throws Exception {
+		Principal user1 = new UserPrincipal("user1", Collections.singleton("role"));
+		Principal user2 = new UserPrincipal("user2", Collections.singleton("not-in-role"));
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		Container container = Revenj.setup(null, properties, Optional.<ClassLoader>empty(), null);
+		PermissionManager permissions = container.resolve(PermissionManager.class);
+		List<Model> values = Arrays.asList(new Model(1), new Model(5), new Model(7), new Model(9));
+		permissions.registerForRole(Model.class, it -> it.i >= 5, "role");
+
+		List<Specification<Model>> translated = new ArrayList<>();
+		Assert.assertTrue(permissions.hasFilters(Model.class, user1));
+		Assert.assertFalse(permissions.hasFilters(Model.class, user2));
+		List<Model> found = permissions.applyFilters(Model.class, user1, listQuery(values, translated), 1, 1);
+		Assert.assertEquals(1, translated.size());
+		Assert.assertEquals(Collections.singletonList(values.get(2)), found);
+
+		permissions.registerForRole(Model.class, new NotTranslatable(), "role");
+		translated.clear();
+		found = permissions.applyFilters(Model.class, user1, listQuery(values, translated), 1, 1);
+		Assert.assertEquals(1, translated.size());
+		Assert.assertEquals(Collections.singletonList(values.get(3)), found);
+	}
 }
@@ -1,14 +1,23 @@
 package org.revenj.server;
 
+import java.util.Collections;
+import java.util.Map;
+
 public final class CommandResult<TFormat> {
 	public final TFormat data;
 	public final String message;
 	public final int status;
+	public final Map<String, String> headers;
 
 	public CommandResult(TFormat data, String message, int status) {
+		this(data, message, status, Collections.emptyMap());
+	}
+
+	public CommandResult(TFormat data, String message, int status, Map<String, String> headers) {
 		this.data = data;
 		this.message = message;
 		this.status = status;
+		this.headers = headers;
 	}
 
 	public static <TFormat> CommandResult<TFormat> badRequest(String message) {
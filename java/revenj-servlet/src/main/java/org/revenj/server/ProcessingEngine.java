@@ -1,5 +1,6 @@
 package org.revenj.server;
 
+import org.revenj.EventDispatcher;
 import org.revenj.extensibility.Container;
 import org.revenj.extensibility.PluginLoader;
 import org.revenj.security.PermissionManager;
@@ -8,6 +9,7 @@ import org.revenj.serialization.WireSerialization;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.security.Principal;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -20,6 +22,7 @@ public final class ProcessingEngine {
 	private final Map<Class<?>, ServerCommand> serverCommands = new HashMap<>();
 	private final WireSerialization serialization;
 	private final PermissionManager permissions;
+	private final EventDispatcher dispatcher;
 
 	public ProcessingEngine(
 			Container container,
@@ -44,11 +47,20 @@ public final class ProcessingEngine {
 		this.dataSource = dataSource;
 		this.serialization = serialization;
 		this.permissions = permissions;
+		this.dispatcher = findDispatcher(container);
 		for (ServerCommand com : commands) {
 			serverCommands.put(com.getClass(), com);
 		}
 	}
 
+	private static EventDispatcher findDispatcher(Container container) {
+		try {
+			return (EventDispatcher) container.resolve((Type) EventDispatcher.class);
+		} catch (ReflectiveOperationException ignore) {
+			return null;
+		}
+	}
+
 	public Optional<Class<?>> findCommand(String name) {
 		for (Class<?> command : serverCommands.keySet()) {
 			if (command.getName().equals(name) || command.getSimpleName().equals(name)) {
@@ -131,6 +143,9 @@ public final class ProcessingEngine {
 					}
 					if (withTransaction) {
 						connection.commit();
+						if (dispatcher != null) {
+							dispatcher.committed(connection);
+						}
 					}
 					return ProcessingResult.success(executedCommands, startProcessing);
 				}
@@ -153,6 +168,9 @@ public final class ProcessingEngine {
 				}
 				return ProcessingResult.error(e, startProcessing);
 			} finally {
+				if (withTransaction && dispatcher != null) {
+					dispatcher.rolledBack(connection);
+				}
 				if (withTransaction) {
 					connection.setAutoCommit(true);
 				}
@@ -1,5 +1,6 @@
 package org.revenj.server.commands.search;
 
+import org.revenj.QueryResultCache;
 import org.revenj.patterns.*;
 import org.revenj.security.PermissionManager;
 import org.revenj.server.ReadOnlyServerCommand;
@@ -35,6 +36,7 @@ public class DomainObjectExists implements ReadOnlyServerCommand {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public <TInput, TOutput> CommandResult<TOutput> execute(
 			ServiceLocator locator,
@@ -80,7 +82,29 @@ public class DomainObjectExists implements ReadOnlyServerCommand {
 		} catch (ReflectiveOperationException e) {
 			return CommandResult.badRequest("Error resolving repository for: " + arg.Name + ". Reason: " + e.getMessage());
 		}
-		boolean found = repository.exists(specification);
+		boolean filtered = permissions.hasFilters(manifest.get(), principal);
+		//cached results are shared between principals, so they can't be used with row filters
+		Optional<QueryResultCache> resultCache = filtered ? Optional.empty() : locator.tryResolve(QueryResultCache.class);
+		if (resultCache.isPresent()) {
+			repository = resultCache.get().wrap((Class) manifest.get(), repository, locator);
+		}
+		boolean found;
+		if (filtered) {
+			try {
+				found = permissions.applyFilters((Class) manifest.get(), principal, repository.query(specification)).any();
+			} catch (IllegalArgumentException | UnsupportedOperationException ignore) {
+				//filters which can't be translated to SQL are applied in memory
+				try {
+					found = !permissions.applyFilters((Class) manifest.get(), principal, repository.query(specification), 1, null).isEmpty();
+				} catch (IOException ex) {
+					return CommandResult.badRequest(ex.getMessage());
+				}
+			} catch (IOException ex) {
+				return CommandResult.badRequest(ex.getMessage());
+			}
+		} else {
+			found = repository.exists(specification);
+		}
 		try {
 			return CommandResult.success(Boolean.toString(found), output.serialize(found));
 		} catch (IOException e) {
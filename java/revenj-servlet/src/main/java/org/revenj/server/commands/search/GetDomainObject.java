@@ -40,6 +40,7 @@ public class GetDomainObject implements ReadOnlyServerCommand {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public <TInput, TOutput> CommandResult<TOutput> execute(
 			ServiceLocator locator,
@@ -73,6 +74,9 @@ public class GetDomainObject implements ReadOnlyServerCommand {
 			return CommandResult.badRequest("Error resolving repository for: " + arg.name + ". Reason: " + e.getMessage());
 		}
 		List<AggregateRoot> found = repository.find(arg.uri);
+		if (permissions.hasFilters(manifest.get(), principal)) {
+			found = new ArrayList<>(permissions.applyFilters((Class) manifest.get(), principal, found));
+		}
 		if (arg.matchOrder && found.size() > 1) {
 			found.sort(new UriComparer(arg.uri));
 		}
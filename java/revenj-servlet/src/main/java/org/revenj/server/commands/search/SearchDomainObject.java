@@ -1,5 +1,6 @@
 package org.revenj.server.commands.search;
 
+import org.revenj.QueryResultCache;
 import org.revenj.patterns.*;
 import org.revenj.database.postgres.jinq.JinqMetaModel;
 import org.revenj.security.PermissionManager;
@@ -10,7 +11,10 @@ import org.revenj.serialization.Serialization;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,17 +41,47 @@ public class SearchDomainObject implements ReadOnlyServerCommand {
 		public final Integer Offset;
 		public final Integer Limit;
 		public final List<Map.Entry<String, Boolean>> Order;
+		public final String After;
 
-		public Argument(String name, String specificationName, TFormat specification, Integer offset, Integer limit, List<Map.Entry<String, Boolean>> order) {
+		public Argument(String name, String specificationName, TFormat specification, Integer offset, Integer limit, List<Map.Entry<String, Boolean>> order, String after) {
 			this.Name = name;
 			this.SpecificationName = specificationName;
 			this.Specification = specification;
 			this.Offset = offset;
 			this.Limit = limit;
 			this.Order = order;
+			this.After = after;
 		}
 	}
 
+	private static String encodeContinuation(Serialization<String> json, Object item, Method[] getters) throws IOException, ReflectiveOperationException {
+		String[] keys = new String[getters.length];
+		for (int i = 0; i < getters.length; i++) {
+			Object value = getters[i].invoke(item);
+			//null keys are kept as null in the token
+			keys[i] = value != null ? json.serialize(value) : null;
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json.serialize(keys).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Object[] decodeContinuation(Serialization<String> json, String token, Method[] getters) throws IOException {
+		String[] keys;
+		try {
+			keys = json.deserialize(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8), String[].class);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e);
+		}
+		if (keys == null || keys.length != getters.length) {
+			throw new IOException("Continuation doesn't match specified order");
+		}
+		Object[] values = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			values[i] = keys[i] != null ? json.deserialize(getters[i].getGenericReturnType(), keys[i]) : null;
+		}
+		return values;
+	}
+
+	@SuppressWarnings("unchecked")
 	@Override
 	public <TInput, TOutput> CommandResult<TOutput> execute(
 			ServiceLocator locator,
@@ -96,30 +130,67 @@ public class SearchDomainObject implements ReadOnlyServerCommand {
 		} catch (ReflectiveOperationException e) {
 			return CommandResult.badRequest("Error resolving repository for: " + arg.Name + ". Reason: " + e.getMessage());
 		}
+		boolean filtered = permissions.hasFilters(manifest.get(), principal);
+		//cached results are shared between principals, so they can't be used with row filters
+		Optional<QueryResultCache> resultCache = filtered ? Optional.empty() : locator.tryResolve(QueryResultCache.class);
+		if (resultCache.isPresent()) {
+			repository = resultCache.get().wrap((Class) manifest.get(), repository, locator);
+		}
 		List<DataSource> found;
+		String continuation = null;
 		if (arg.Order != null && !arg.Order.isEmpty()) {
 			Query<DataSource> query = repository.query(specification);
-			for (Map.Entry<String, Boolean> o : arg.Order) {
+			Method[] getters = new Method[arg.Order.size()];
+			for (int i = 0; i < getters.length; i++) {
+				Map.Entry<String, Boolean> o = arg.Order.get(i);
 				Method method;
 				try {
 					method = manifest.get().getMethod("get" + o.getKey().substring(0, 1).toUpperCase() + o.getKey().substring(1));
 				} catch (NoSuchMethodException e) {
 					return CommandResult.badRequest("Unable to find getter method for: " + o.getKey());
 				}
+				getters[i] = method;
 				if (o.getValue()) {
 					query = query.sortedBy(jinqModel.findGetter(method));
 				} else {
 					query = query.sortedDescendingBy(jinqModel.findGetter(method));
 				}
 			}
-			if (arg.Offset != null) {
-				query = query.skip(arg.Offset);
+			Serialization<String> json;
+			try {
+				json = locator.resolve(Serialization.class, String.class);
+			} catch (ReflectiveOperationException e) {
+				json = null;
+			}
+			if (arg.After != null && arg.After.length() > 0) {
+				if (arg.Offset != null) {
+					return CommandResult.badRequest("Offset can't be used with continuation.");
+				}
+				if (json == null) {
+					return CommandResult.badRequest("Continuation is not supported without JSON serialization.");
+				}
+				try {
+					query = query.afterKeys(decodeContinuation(json, arg.After, getters));
+				} catch (IOException e) {
+					return CommandResult.badRequest("Invalid continuation: " + arg.After);
+				}
+			}
+			try {
+				found = permissions.applyFilters((Class) manifest.get(), principal, query, arg.Limit, arg.Offset);
+			} catch (IOException ex) {
+				return CommandResult.badRequest(ex.getMessage());
 			}
-			if (arg.Limit != null) {
-				query = query.limit(arg.Limit);
+			if (json != null && arg.Limit != null && arg.Limit > 0 && found.size() == arg.Limit) {
+				try {
+					continuation = encodeContinuation(json, found.get(found.size() - 1), getters);
+				} catch (IOException | ReflectiveOperationException ignore) {
+				}
 			}
+		} else if (arg.After != null && arg.After.length() > 0) {
+			return CommandResult.badRequest("Continuation requires order.");
+		} else if (filtered) {
 			try {
-				found = query.list();
+				found = permissions.applyFilters((Class) manifest.get(), principal, repository.query(specification), arg.Limit, arg.Offset);
 			} catch (IOException ex) {
 				return CommandResult.badRequest(ex.getMessage());
 			}
@@ -127,7 +198,11 @@ public class SearchDomainObject implements ReadOnlyServerCommand {
 			found = repository.search(specification, arg.Limit, arg.Offset);
 		}
 		try {
-			return CommandResult.success("Found " + found.size() + " items", output.serialize(found));
+			return new CommandResult<>(
+					output.serialize(found),
+					"Found " + found.size() + " items",
+					200,
+					continuation != null ? Collections.singletonMap("X-Continuation", continuation) : Collections.emptyMap());
 		} catch (IOException e) {
 			return new CommandResult<>(null, "Error serializing result.", 500);
 		}
@@ -53,7 +53,7 @@ public class DomainServlet extends HttpServlet {
 					res.sendError(400, "Invalid limit/offset provided: " + nfe.getMessage());
 					return;
 				}
-				SearchDomainObject.Argument arg = new SearchDomainObject.Argument<>(name.get(), spec, specification.orElse(null), offset, limit, order);
+				SearchDomainObject.Argument arg = new SearchDomainObject.Argument<>(name.get(), spec, specification.orElse(null), offset, limit, order, req.getParameter("after"));
 				Utility.execute(engine, req, res, serialization, SearchDomainObject.class, arg);
 			}
 		} else if (path.startsWith("/count/")) {
@@ -186,12 +186,13 @@ public class DomainServlet extends HttpServlet {
 				res.sendError(400, "Invalid limit/offset provided: " + nfe.getMessage());
 				return;
 			}
+			String after = req.getParameter("after");
 			executeWithSpecification(
 					SearchDomainObject.class,
 					req,
 					res,
 					name.get(),
-					spec -> new SearchDomainObject.Argument<>(name.get(), null, spec, offset, limit, order));
+					spec -> new SearchDomainObject.Argument<>(name.get(), null, spec, offset, limit, order, after));
 		}
 	}
 
@@ -43,6 +43,9 @@ abstract class Utility {
 			CommandResult<Object> command = result.executedCommandResults[0].result;
 			response.setStatus(command.status);
 			response.setHeader("X-Duration", BigDecimal.valueOf(result.duration, 3).toPlainString());
+			for (Map.Entry<String, String> header : command.headers.entrySet()) {
+				response.setHeader(header.getKey(), header.getValue());
+			}
 			if (command.data != null) {
 				response.setContentType(serialization.serialize(command.data, response.getOutputStream(), request.getHeader("accept")));
 			} else if (result.message != null) {
@@ -16,12 +16,21 @@ final class JinqQueryProvider implements QueryProvider {
 	private final MetamodelUtil metamodel;
 	private final ClassLoader loader;
 	private final javax.sql.DataSource dataSource;
-	private final RevenjQueryComposerCache cachedQueries = new RevenjQueryComposerCache();
+	private final RevenjQueryComposerCache cachedQueries;
 
 	public JinqQueryProvider(MetamodelUtil metamodel, ClassLoader loader, javax.sql.DataSource dataSource) {
+		this(metamodel, loader, dataSource, new RevenjQueryComposerCache());
+	}
+
+	public JinqQueryProvider(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			javax.sql.DataSource dataSource,
+			RevenjQueryComposerCache cachedQueries) {
 		this.metamodel = metamodel;
 		this.loader = loader;
 		this.dataSource = dataSource;
+		this.cachedQueries = cachedQueries;
 	}
 
 	public <T extends DataSource> Query<T> query(Connection connection, ServiceLocator locator, Class<T> manifest) {
@@ -9,6 +9,7 @@ import org.revenj.patterns.DataChangeNotification;
 import org.revenj.patterns.DataContext;
 import org.revenj.patterns.ServiceLocator;
 import org.revenj.database.postgres.QueryProvider;
+import org.revenj.database.postgres.jinq.RevenjQueryComposerCache;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
 import org.revenj.security.PermissionManager;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,7 +67,8 @@ public class RevenjStartup {
 		MetamodelUtil metamodel = container.resolve(MetamodelUtil.class);
 		DataSource dataSource = container.resolve(DataSource.class);
 		ClassLoader loader = container.resolve(ClassLoader.class);
-		container.registerInstance(QueryProvider.class, new JinqQueryProvider(metamodel, loader, dataSource), false);
+		RevenjQueryComposerCache queryCache = container.tryResolve(RevenjQueryComposerCache.class).orElseGet(RevenjQueryComposerCache::new);
+		container.registerInstance(QueryProvider.class, new JinqQueryProvider(metamodel, loader, dataSource, queryCache), false);
 	}
 
 	@Bean
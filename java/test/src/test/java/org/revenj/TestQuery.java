@@ -65,6 +65,107 @@ public class TestQuery extends Setup {
 		Assert.assertEquals(1, found.size());
 	}
 
+	@Test
+	public void projectOnlySelectedColumns() throws IOException {
+		ServiceLocator locator = container;
+		InfoRepository infoRepository = locator.resolve(InfoRepository.class);
+		String id = UUID.randomUUID().toString();
+		infoRepository.insert(Arrays.asList(
+				new Info().setCode("code " + id + " A").setName("name A"),
+				new Info().setCode("code " + id + " B").setName("name B")));
+		List<String> names = infoRepository.query(it -> it.getCode().startsWith("code " + id))
+				.sortedBy(Info::getCode)
+				.select(Info::getName);
+		Assert.assertEquals(Arrays.asList("name A", "name B"), names);
+		NextRepository nextRepository = locator.resolve(NextRepository.class);
+		int next = Integer.parseInt(nextRepository.insert(new Next()));
+		List<Integer> ids = nextRepository.query(it -> it.getID() == next).select(Next::getID);
+		Assert.assertEquals(Collections.singletonList(next), ids);
+	}
+
+	@Test
+	public void seekPagination() throws IOException {
+		ServiceLocator locator = container;
+		InfoRepository infoRepository = locator.resolve(InfoRepository.class);
+		String id = UUID.randomUUID().toString();
+		List<Info> infos = new ArrayList<>();
+		for (char letter = 'A'; letter <= 'E'; letter++) {
+			infos.add(new Info().setCode("code " + id + " " + letter).setName("name " + letter));
+		}
+		infoRepository.insert(infos);
+		Query<Info> query = infoRepository.query(it -> it.getCode().startsWith("code " + id)).sortedBy(Info::getCode);
+		List<Info> first = query.limit(2).list();
+		Assert.assertEquals(2, first.size());
+		List<Info> second = query.after(first.get(1)).limit(2).list();
+		Assert.assertEquals(Arrays.asList("name C", "name D"), second.stream().map(Info::getName).collect(Collectors.toList()));
+		List<Info> last = query.afterKeys(second.get(1).getCode()).list();
+		Assert.assertEquals(1, last.size());
+		Assert.assertEquals("name E", last.get(0).getName());
+		try {
+			query.limit(2).after(first.get(1));
+			Assert.fail("Expecting exception");
+		} catch (IllegalArgumentException ignore) {
+		}
+	}
+
+	@Test
+	public void compiledQueryRebindsArguments() throws IOException {
+		ServiceLocator locator = container;
+		NextRepository repository = locator.resolve(NextRepository.class);
+		String[] uris = repository.insert(Arrays.asList(new Next(), new Next()));
+		int id1 = Integer.parseInt(uris[0]);
+		int id2 = Integer.parseInt(uris[1]);
+		Query.Compiled<Next> byId = repository.query(it -> it.getID() == id1).compile();
+		Assert.assertEquals(id1, byId.list(id1).get(0).getID());
+		Assert.assertEquals(id2, byId.list(id2).get(0).getID());
+		Assert.assertEquals(0, byId.list(-1).size());
+	}
+
+	@Test
+	public void asyncFanOut() throws Exception {
+		ServiceLocator locator = container;
+		NextRepository repository = locator.resolve(NextRepository.class);
+		String[] uris = repository.insert(Arrays.asList(new Next(), new Next()));
+		int id1 = Integer.parseInt(uris[0]);
+		int id2 = Integer.parseInt(uris[1]);
+		java.util.concurrent.CompletableFuture<List<Next>> first = repository.query(it -> it.getID() == id1).listAsync();
+		java.util.concurrent.CompletableFuture<Long> second = repository.query(it -> it.getID() == id2).countAsync();
+		java.util.concurrent.CompletableFuture<List<Next>> found = repository.findAsync(uris);
+		java.util.concurrent.CompletableFuture.allOf(first, second, found).get();
+		Assert.assertEquals(id1, first.get().get(0).getID());
+		Assert.assertEquals(1L, second.get().longValue());
+		Assert.assertEquals(2, found.get().size());
+	}
+
+	@Test
+	public void parallelScanKeepsOrder() throws IOException {
+		ServiceLocator locator = container;
+		NextRepository repository = locator.resolve(NextRepository.class);
+		String[] uris = repository.insert(Arrays.asList(new Next(), new Next(), new Next(), new Next(), new Next()));
+		int id1 = Integer.parseInt(uris[0]);
+		int id5 = Integer.parseInt(uris[4]);
+		Query<Next> query = repository.query(it -> it.getID() >= id1 && it.getID() <= id5).sortedDescendingBy(Next::getID);
+		List<Next> sequential = query.list();
+		List<Next> parallel = query.parallel(3).list();
+		Assert.assertEquals(5, parallel.size());
+		Assert.assertEquals(
+				sequential.stream().map(Next::getID).collect(Collectors.toList()),
+				parallel.stream().map(Next::getID).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void streamWithFilter() throws IOException {
+		ServiceLocator locator = container;
+		NextRepository repository = locator.resolve(NextRepository.class);
+		String[] uris = repository.insert(Arrays.asList(new Next(), new Next(), new Next()));
+		int id1 = Integer.parseInt(uris[0]);
+		int id3 = Integer.parseInt(uris[2]);
+		try (java.util.stream.Stream<Next> stream = repository.query(next -> next.getID() >= id1 && next.getID() <= id3).stream()) {
+			List<Integer> found = stream.map(Next::getID).collect(Collectors.toList());
+			Assert.assertEquals(3, found.size());
+		}
+	}
+
 	@Test
 	public void searchWithFilter() throws IOException {
 		ServiceLocator locator = container;
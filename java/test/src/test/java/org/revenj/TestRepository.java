@@ -471,7 +471,21 @@ public class TestRepository extends Setup {
 
 	@Test
 	public void bulkReadingSql() throws Exception {
-		ServiceLocator locator = container;
+		bulkReading(container);
+	}
+
+	@Test
+	public void bulkReadingModes() throws Exception {
+		for (String mode : new String[]{"pipelined", "parallel", "auto"}) {
+			Properties properties = new Properties();
+			properties.setProperty("revenj.bulkReaderMode", mode);
+			try (org.revenj.extensibility.Container container = Setup.container(properties)) {
+				bulkReading(container);
+			}
+		}
+	}
+
+	private static void bulkReading(ServiceLocator locator) throws Exception {
 		DataContext context = locator.resolve(DataContext.class);
 		Random rnd = new Random();
 		String name = "bulk " + rnd.nextInt();